@@ -0,0 +1,99 @@
+package com.tellerulam.knx2mqtt.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tellerulam.knx2mqtt.DptDecoder;
+import com.tellerulam.knx2mqtt.GroupAddressInfo;
+import com.tellerulam.knx2mqtt.StatusEncoder;
+
+import tuwien.auto.calimero.IndividualAddress;
+/**
+ * Building the payload of a status message, as done by <code>MQTTHandler.doPublish()</code> before
+ * the message is handed to the MQTT client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodeBenchmark {
+
+	@Param({ "1.001", "5.001", "9.001", "14.019", "16.000" })
+	public String dpt;
+
+	private final StatusEncoder _encoder = new StatusEncoder();
+
+	private final IndividualAddress _src = new IndividualAddress(1, 1, 42);
+
+	private GroupAddressInfo _gai;
+
+	private StatusEncoder.Template _template;
+
+	private byte[] _asdu;
+
+	private DptDecoder.Kind _kind;
+
+	private double _number;
+
+	private String _text;
+
+	@Setup
+	public void setup() {
+		_gai = new GroupAddressInfo("Floor 1/Room 12/Function 7", "1/2/3");
+		_gai.setDpt(dpt);
+		_template = StatusEncoder.createTemplate("knx/status/" + _gai.getName(), dpt);
+		_asdu = TranslateBenchmark.samples(dpt)[0];
+		// The decoded values of the first sample ASDU.
+		switch (dpt) {
+		case "1.001":
+			_kind = DptDecoder.Kind.INTEGRAL;
+			break;
+		case "5.001":
+			_kind = DptDecoder.Kind.INTEGRAL;
+			_number = 25;
+			break;
+		case "9.001":
+			_kind = DptDecoder.Kind.FLOAT;
+			_number = 21.0;
+			break;
+		case "14.019":
+			_kind = DptDecoder.Kind.FLOAT;
+			_number = 21.0;
+			break;
+		default:
+			_kind = DptDecoder.Kind.TEXT;
+			_text = "Benchmark";
+		}
+	}
+
+	/**
+	 * Encoding of the JSON payload only.
+	 */
+	@Benchmark
+	public byte[] encode() {
+		return _encoder.encode(_template, 1444000000000L, 1443000000000L, _src, null, _kind, _number, _text);
+	}
+
+	/**
+	 * Encoding including the textual representation with unit, as for every published update.
+	 */
+	@Benchmark
+	public byte[] encodeWithTextual() {
+		return _encoder.encode(_template, 1444000000000L, 1443000000000L, _src, _gai.getTextutal(_asdu), _kind,
+				_number, _text);
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.tellerulam.knx2mqtt.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tellerulam.knx2mqtt.EtsLoader;
+import com.tellerulam.knx2mqtt.GroupAddressManager;
+
+/**
+ * Loading of synthetic ETS project files created by the {@link KnxprojGenerator}, both the full
+ * import and the start from an up-to-date cache.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EtsImportBenchmark {
+
+	/**
+	 * A generated project file, deleted after the trial.
+	 */
+	@State(Scope.Benchmark)
+	public static class ProjectFile {
+
+		@Param({ "1000", "10000", "50000" })
+		public int groupAddresses;
+
+		/**
+		 * Number of device types, each with its own application description.
+		 */
+		@Param({ "50" })
+		public int devices;
+
+		@Param({ "binary", "json" })
+		public String cacheFormat;
+
+		File file;
+
+		@Setup(Level.Trial)
+		public void generate() throws IOException {
+			file = File.createTempFile("benchmark", ".knxproj");
+			new KnxprojGenerator(groupAddresses, groupAddresses * 3, devices).generate(file);
+			System.setProperty("knx2mqtt.knx.cacheformat", cacheFormat);
+		}
+
+		File cacheFile() {
+			return new File(file.getPath() + ("json".equals(cacheFormat) ? ".json" : ".bin"));
+		}
+
+		void deleteCache() {
+			File cacheFile = cacheFile();
+			cacheFile.delete();
+			new File(cacheFile.getPath() + ".index").delete();
+		}
+
+		@TearDown(Level.Trial)
+		public void delete() {
+			deleteCache();
+			file.delete();
+		}
+	}
+
+	/**
+	 * A project file without group address cache.
+	 */
+	@State(Scope.Benchmark)
+	public static class UncachedProject extends ProjectFile {
+		@Setup(Level.Invocation)
+		public void removeCache() {
+			deleteCache();
+		}
+	}
+
+	/**
+	 * A project file with an up-to-date group address cache.
+	 */
+	@State(Scope.Benchmark)
+	public static class CachedProject extends ProjectFile {
+		@Setup(Level.Trial)
+		public void createCache() {
+			EtsLoader.load(new GroupAddressManager(), file.getPath());
+		}
+	}
+
+	/**
+	 * Full import: parsing the project and the referenced device descriptions, and writing the
+	 * cache.
+	 */
+	@Benchmark
+	public GroupAddressManager importProject(UncachedProject project) {
+		GroupAddressManager result = new GroupAddressManager();
+		EtsLoader.load(result, project.file.getPath());
+		return result;
+	}
+
+	/**
+	 * Start from the cache, including building the name index used for MQTT set and get messages.
+	 */
+	@Benchmark
+	public GroupAddressManager loadCached(CachedProject project) {
+		GroupAddressManager result = new GroupAddressManager();
+		EtsLoader.load(result, project.file.getPath());
+		result.getNameTrie();
+		return result;
+	}
+
+}
@@ -0,0 +1,204 @@
+package com.tellerulam.knx2mqtt.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates synthetic ETS project files (<code>.knxproj</code>) of configurable size.
+ *
+ * <p>
+ * The generated archive has the structure read by the <code>EtsLoader</code>: a project directory
+ * with <code>project.xml</code> and <code>0.xml</code>, containing the group range hierarchy and
+ * the topology with the connections of all com objects, and one application description per
+ * device type. One in four group addresses has its DPT set directly, all others need the DPT to be
+ * resolved from their connections and the referenced device descriptions. Generation is
+ * deterministic for the same parameters.
+ * </p>
+ *
+ * <p>
+ * Usage: <code>KnxprojGenerator &lt;file&gt; [group addresses] [connections] [device types]</code>
+ * </p>
+ */
+public class KnxprojGenerator {
+
+	private static final String PROJECT_DIR = "P-0001";
+
+	private static final String MANUFACTURER = "M-0083";
+
+	/**
+	 * Com objects of each device type.
+	 */
+	private static final int COM_OBJECTS = 50;
+
+	/**
+	 * DPTs of the com objects, assigned round-robin.
+	 */
+	private static final String[] DPTS = { "DPST-1-1", "DPST-5-1", "DPST-9-1", "DPST-1-8", "DPST-9-4", "DPST-13-10",
+			"DPST-14-19", "DPST-16-0", "DPST-3-7", "DPST-7-1" };
+
+	private static final String[] OBJECT_SIZES = { "1 Bit", "1 Byte", "2 Bytes", "1 Bit", "2 Bytes", "4 Bytes",
+			"4 Bytes", "14 Bytes", "4 Bit", "2 Bytes" };
+
+	/**
+	 * Group addresses per middle group, as assigned by ETS.
+	 */
+	private static final int MIDDLE_GROUP_SIZE = 256;
+
+	private final int _groupAddresses;
+
+	private final int _connections;
+
+	private final int _devices;
+
+	/**
+	 * Creates a {@link KnxprojGenerator}.
+	 *
+	 * @param groupAddresses
+	 *        Number of group addresses, at most 65535.
+	 * @param connections
+	 *        Number of connections of com objects to group addresses.
+	 * @param devices
+	 *        Number of distinct device types (application descriptions).
+	 */
+	public KnxprojGenerator(int groupAddresses, int connections, int devices) {
+		if (groupAddresses < 1 || groupAddresses > 0xFFFF) {
+			throw new IllegalArgumentException("Number of group addresses must be between 1 and 65535.");
+		}
+		_groupAddresses = groupAddresses;
+		_connections = connections;
+		_devices = Math.max(1, devices);
+	}
+
+	/**
+	 * Writes the project file.
+	 */
+	public void generate(File file) throws IOException {
+		try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+			Writer out = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+
+			zip.putNextEntry(new ZipEntry(PROJECT_DIR + "/project.xml"));
+			out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<KNX><Project Id=\"" + PROJECT_DIR
+					+ "\"><ProjectInformation Name=\"Benchmark\"/></Project></KNX>\n");
+			out.flush();
+			zip.closeEntry();
+
+			zip.putNextEntry(new ZipEntry(PROJECT_DIR + "/0.xml"));
+			writeProject(out);
+			out.flush();
+			zip.closeEntry();
+
+			for (int device = 0; device < _devices; device++) {
+				zip.putNextEntry(new ZipEntry(MANUFACTURER + "/" + applicationId(device) + ".xml"));
+				writeApplication(out, device);
+				out.flush();
+				zip.closeEntry();
+			}
+
+			zip.putNextEntry(new ZipEntry("knx_master.xml"));
+			out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<KNX/>\n");
+			out.flush();
+			zip.closeEntry();
+		}
+	}
+
+	private void writeProject(Writer out) throws IOException {
+		Random random = new Random(_groupAddresses * 31L + _connections);
+
+		out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+		out.write("<KNX><Project Id=\"" + PROJECT_DIR + "\"><Installations><Installation Name=\"\">\n");
+		out.write("<Topology><Area Address=\"1\"><Line Address=\"1\">\n");
+		int connection = 0;
+		for (int instance = 0; connection < _connections; instance++) {
+			int device = instance % _devices;
+			out.write("<DeviceInstance Id=\"" + PROJECT_DIR + "-0_DI-" + instance + "\" Address=\"" + (instance % 256)
+					+ "\"><ComObjectInstanceRefs>\n");
+			for (int object = 0; object < COM_OBJECTS && connection < _connections; object++, connection++) {
+				// Every address is connected at least once, further connections are random.
+				int groupAddress = connection < _groupAddresses ? connection : random.nextInt(_groupAddresses);
+				boolean send = random.nextInt(3) == 0;
+				out.write("<ComObjectInstanceRef RefId=\"" + comObjectId(device, object) + "_R-" + object
+						+ "\"><Connectors><" + (send ? "Send" : "Receive") + " GroupAddressRefId=\""
+						+ groupAddressId(groupAddress) + "\"/></Connectors></ComObjectInstanceRef>\n");
+			}
+			out.write("</ComObjectInstanceRefs></DeviceInstance>\n");
+		}
+		out.write("</Line></Area></Topology>\n");
+
+		out.write("<GroupAddresses><GroupRanges>\n");
+		int middleGroups = (_groupAddresses + MIDDLE_GROUP_SIZE - 1) / MIDDLE_GROUP_SIZE;
+		for (int middle = 0; middle < middleGroups; middle++) {
+			if (middle % 8 == 0) {
+				if (middle > 0) {
+					out.write("</GroupRange>\n");
+				}
+				out.write("<GroupRange Name=\"Floor " + (middle / 8) + "\">\n");
+			}
+			out.write("<GroupRange Name=\"Room " + middle + "\">\n");
+			int end = Math.min(_groupAddresses, (middle + 1) * MIDDLE_GROUP_SIZE);
+			for (int groupAddress = middle * MIDDLE_GROUP_SIZE; groupAddress < end; groupAddress++) {
+				out.write("<GroupAddress Id=\"" + groupAddressId(groupAddress) + "\" Address=\"" + (groupAddress + 1)
+						+ "\" Name=\"Function " + groupAddress + "\"");
+				if (groupAddress % 4 == 0) {
+					out.write(" DatapointType=\"" + DPTS[groupAddress % DPTS.length] + "\"");
+				}
+				out.write("/>\n");
+			}
+			out.write("</GroupRange>\n");
+		}
+		out.write("</GroupRange>\n");
+		out.write("</GroupRanges></GroupAddresses>\n");
+		out.write("</Installation></Installations></Project></KNX>\n");
+	}
+
+	private static void writeApplication(Writer out, int device) throws IOException {
+		out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+		out.write("<KNX><ManufacturerData><Manufacturer RefId=\"" + MANUFACTURER + "\"><ApplicationPrograms>"
+				+ "<ApplicationProgram Id=\"" + applicationId(device) + "\"><Static><ComObjectTable>\n");
+		for (int object = 0; object < COM_OBJECTS; object++) {
+			int type = (device + object) % DPTS.length;
+			out.write("<ComObject Id=\"" + comObjectId(device, object) + "\" Name=\"Object " + object
+					+ "\" ObjectSize=\"" + OBJECT_SIZES[type] + "\" DatapointType=\"" + DPTS[type] + "\"/>\n");
+		}
+		out.write("</ComObjectTable><ComObjectRefs>\n");
+		for (int object = 0; object < COM_OBJECTS; object++) {
+			out.write("<ComObjectRef Id=\"" + comObjectId(device, object) + "_R-" + object + "\" RefId=\""
+					+ comObjectId(device, object) + "\"/>\n");
+		}
+		out.write("</ComObjectRefs></Static></ApplicationProgram></ApplicationPrograms></Manufacturer>"
+				+ "</ManufacturerData></KNX>\n");
+	}
+
+	private static String applicationId(int device) {
+		return MANUFACTURER + "_A-" + String.format("%04X", Integer.valueOf(device)) + "-11-EA36";
+	}
+
+	private static String comObjectId(int device, int object) {
+		return applicationId(device) + "_O-" + object;
+	}
+
+	private static String groupAddressId(int groupAddress) {
+		return PROJECT_DIR + "-0_GA-" + groupAddress;
+	}
+
+	/**
+	 * Generates a project file from the command line.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: KnxprojGenerator <file> [group addresses] [connections] [device types]");
+			System.exit(1);
+		}
+		int groupAddresses = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int connections = args.length > 2 ? Integer.parseInt(args[2]) : groupAddresses * 3;
+		int devices = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+		new KnxprojGenerator(groupAddresses, connections, devices).generate(new File(args[0]));
+	}
+
+}
@@ -0,0 +1,138 @@
+package com.tellerulam.knx2mqtt.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tellerulam.knx2mqtt.GroupAddressInfo;
+import com.tellerulam.knx2mqtt.GroupAddressManager;
+import com.tellerulam.knx2mqtt.TopicTrie;
+
+import tuwien.auto.calimero.GroupAddress;
+
+/**
+ * Group address lookups of the {@link GroupAddressManager} by address (KNX receive path) and by
+ * name (MQTT set and get path).
+ *
+ * <p>
+ * Lookups cycle through all group addresses in a shuffled order, so that the results are not
+ * dominated by a single cached entry.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LookupBenchmark {
+
+	private static final String TOPIC_PREFIX = "knx/set/";
+
+	@Param({ "100", "5000", "50000" })
+	public int size;
+
+	private GroupAddressManager _addressManager;
+
+	private TopicTrie _trie;
+
+	private int[] _rawAddresses;
+
+	private GroupAddress[] _addresses;
+
+	private String[] _names;
+
+	private String[] _topics;
+
+	private int _next;
+
+	@Setup
+	public void setup() {
+		_addressManager = new GroupAddressManager();
+		_rawAddresses = new int[size];
+		_addresses = new GroupAddress[size];
+		_names = new String[size];
+		_topics = new String[size];
+		for (int n = 0; n < size; n++) {
+			int raw = n + 1;
+			String name = "Floor " + (n / 2048) + "/Room " + (n / 256) + "/Function " + n;
+			GroupAddressInfo gai = new GroupAddressInfo(name, raw);
+			gai.setDpt("9.001");
+			_addressManager.add(gai);
+			_rawAddresses[n] = raw;
+			_addresses[n] = new GroupAddress(raw);
+			_names[n] = name;
+			_topics[n] = TOPIC_PREFIX + name;
+		}
+		Random random = new Random(size);
+		for (int n = size - 1; n > 0; n--) {
+			int k = random.nextInt(n + 1);
+			swap(_rawAddresses, n, k);
+			swap(_addresses, n, k);
+			swap(_names, n, k);
+			swap(_topics, n, k);
+		}
+		_trie = _addressManager.getNameTrie();
+	}
+
+	private static void swap(int[] values, int n, int k) {
+		int tmp = values[n];
+		values[n] = values[k];
+		values[k] = tmp;
+	}
+
+	private static <T> void swap(T[] values, int n, int k) {
+		T tmp = values[n];
+		values[n] = values[k];
+		values[k] = tmp;
+	}
+
+	private int next() {
+		int result = _next;
+		_next = result + 1 == size ? 0 : result + 1;
+		return result;
+	}
+
+	@Benchmark
+	public GroupAddressInfo byRawAddress() {
+		return _addressManager.getGAInfoForAddress(_rawAddresses[next()]);
+	}
+
+	@Benchmark
+	public GroupAddressInfo byGroupAddress() {
+		return _addressManager.getGAInfoForAddress(_addresses[next()]);
+	}
+
+	@Benchmark
+	public GroupAddressInfo byName() {
+		return _addressManager.getGAInfoForName(_names[next()]);
+	}
+
+	/**
+	 * Lookup of the group address of an MQTT topic, as done for each set and get message.
+	 */
+	@Benchmark
+	public int byTopic() {
+		return _trie.lookup(_topics[next()], TOPIC_PREFIX.length());
+	}
+
+	/**
+	 * Lookup of all group addresses below a group range, as done for a wildcard get.
+	 */
+	@Benchmark
+	public int[] subtreeByTopic() {
+		return _trie.lookupSubtree(TOPIC_PREFIX + "Floor 0/#", TOPIC_PREFIX.length());
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.tellerulam.knx2mqtt.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tellerulam.knx2mqtt.GroupAddressInfo;
+
+import tuwien.auto.calimero.exception.KNXFormatException;
+
+/**
+ * Decoding of received ASDUs by {@link GroupAddressInfo#translateAndStoreValue(byte[], long)} for
+ * common DPTs.
+ *
+ * <p>
+ * Two different ASDUs are translated alternately, so that every invocation stores a changed value.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TranslateBenchmark {
+
+	@Param({ "1.001", "5.001", "9.001", "13.010", "14.019", "16.000", "3.007" })
+	public String dpt;
+
+	private GroupAddressInfo _gai;
+
+	private byte[][] _asdus;
+
+	private int _next;
+
+	@Setup
+	public void setup() {
+		_gai = new GroupAddressInfo("Benchmark/Value", "1/2/3");
+		_gai.setDpt(dpt);
+		_asdus = samples(dpt);
+	}
+
+	static byte[][] samples(String dpt) {
+		switch (dpt.substring(0, dpt.indexOf('.'))) {
+		case "1":
+			return new byte[][] { { 0 }, { 1 } };
+		case "3":
+			return new byte[][] { { 0x09 }, { 0x01 } };
+		case "5":
+			return new byte[][] { { 0x40 }, { (byte) 0xC0 } };
+		case "9":
+			return new byte[][] { { 0x0C, 0x1A }, { (byte) 0x8A, 0x24 } };
+		case "13":
+			return new byte[][] { { 0, 0, 0x30, 0x39 }, { (byte) 0xFF, (byte) 0xFF, (byte) 0xCF, (byte) 0xC7 } };
+		case "14":
+			return new byte[][] { { 0x41, (byte) 0xA8, 0, 0 }, { 0x42, 0x48, 0, 0 } };
+		case "16":
+			return new byte[][] { "Benchmark     ".getBytes(), "knx2mqtt      ".getBytes() };
+		default:
+			throw new IllegalArgumentException("No samples for DPT " + dpt);
+		}
+	}
+
+	@Benchmark
+	public boolean translate() throws KNXFormatException {
+		return _gai.translateAndStoreValue(_asdus[_next++ & 1], 0);
+	}
+
+}
@@ -0,0 +1,426 @@
+package com.tellerulam.knx2mqtt.loadtest;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMI;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.exception.KNXFormatException;
+import tuwien.auto.calimero.knxnetip.servicetype.ConnectRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.ConnectResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.ConnectionstateRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.ConnectionstateResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.DisconnectRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.DisconnectResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.ErrorCodes;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.servicetype.RoutingIndication;
+import tuwien.auto.calimero.knxnetip.servicetype.ServiceAck;
+import tuwien.auto.calimero.knxnetip.servicetype.ServiceRequest;
+import tuwien.auto.calimero.knxnetip.util.HPAI;
+import tuwien.auto.calimero.knxnetip.util.TunnelCRD;
+
+/**
+ * In-process stand-in for a KNXnet/IP gateway, either a tunneling server with a single tunnel or a
+ * router.
+ *
+ * <p>
+ * Group telegrams sent by the connected client are confirmed and reported to a {@link Bus}. Telegrams
+ * of simulated bus devices are injected with {@link #sendGroupWrite(int, byte[])}. All frames to
+ * the client pass a bounded gateway buffer and are sent one at a time; in tunneling mode, each frame
+ * waits for the client's acknowledge like a real tunneling server, so that the acknowledge cycle of
+ * the tunnel limits the throughput. An optional bus time per frame emulates a slow medium.
+ * </p>
+ */
+public class KnxIpServer {
+	private static final Logger L = Logger.getLogger(KnxIpServer.class.getName());
+
+	/**
+	 * The system setup multicast address of KNXnet/IP routing.
+	 */
+	public static final String ROUTING_GROUP = "224.0.23.12";
+
+	private static final int CHANNEL_ID = 1;
+
+	private static final long ACK_TIMEOUT = 1000;
+
+	private static final IndividualAddress TUNNEL_ADDRESS = new IndividualAddress(1, 1, 255);
+
+	private static final IndividualAddress DEVICE_ADDRESS = new IndividualAddress(1, 1, 10);
+
+	/**
+	 * Receiver of the group telegrams sent by the client.
+	 */
+	public interface Bus {
+		/**
+		 * Called from the server's receive thread for each group telegram of the client.
+		 *
+		 * @param tpdu
+		 *        The transport layer PDU, starting with the APCI.
+		 */
+		void received(int rawAddress, byte[] tpdu);
+	}
+
+	private final boolean _routing;
+
+	private final Bus _bus;
+
+	private final long _busTimeNanos;
+
+	private final DatagramSocket _socket;
+
+	private final BlockingQueue<CEMI> _outgoing;
+
+	private final AtomicLong _overflows = new AtomicLong();
+
+	private final AtomicLong _repetitions = new AtomicLong();
+
+	private final Object _ackLock = new Object();
+
+	/**
+	 * Sequence number of the last frame acknowledged by the client, -1 for none.
+	 */
+	private int _ackedSeq = -1;
+
+	private volatile InetSocketAddress _client;
+
+	private volatile InetSocketAddress _control;
+
+	private int _sendSeq;
+
+	private int _receiveSeq;
+
+	private volatile boolean _running = true;
+
+	/**
+	 * Creates a {@link KnxIpServer}.
+	 *
+	 * @param routing
+	 *        Whether to act as KNXnet/IP router on the given port of the multicast group
+	 *        {@link #ROUTING_GROUP}, instead of a tunneling server on an ephemeral port.
+	 * @param port
+	 *        The routing port, ignored for tunneling.
+	 * @param bufferSize
+	 *        Number of frames the gateway buffers for the client before it drops frames.
+	 * @param busTimeMicros
+	 *        Time a frame occupies the simulated bus.
+	 */
+	public KnxIpServer(boolean routing, int port, int bufferSize, long busTimeMicros, Bus bus) throws IOException {
+		_routing = routing;
+		_bus = bus;
+		_busTimeNanos = TimeUnit.MICROSECONDS.toNanos(busTimeMicros);
+		_outgoing = new ArrayBlockingQueue<>(bufferSize);
+		if (routing) {
+			MulticastSocket socket = new MulticastSocket(port);
+			socket.setNetworkInterface(NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress()));
+			socket.joinGroup(InetAddress.getByName(ROUTING_GROUP));
+			_socket = socket;
+			_client = new InetSocketAddress(ROUTING_GROUP, port);
+		} else {
+			_socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		}
+	}
+
+	/**
+	 * The local port of the server.
+	 */
+	public int getPort() {
+		return _socket.getLocalPort();
+	}
+
+	/**
+	 * Whether a client is connected (tunneling) or the router is running.
+	 */
+	public boolean isConnected() {
+		return _client != null;
+	}
+
+	/**
+	 * Number of frames dropped because the gateway buffer was full.
+	 */
+	public long getOverflowCount() {
+		return _overflows.get();
+	}
+
+	/**
+	 * Number of frames that were sent again because the client did not acknowledge them in time.
+	 */
+	public long getRepetitionCount() {
+		return _repetitions.get();
+	}
+
+	/**
+	 * Starts the receive and send threads.
+	 */
+	public void start() {
+		Thread receiver = new Thread("KNXnet/IP Server Receiver") {
+			@Override
+			public void run() {
+				receiveLoop();
+			}
+		};
+		receiver.setDaemon(true);
+		receiver.start();
+
+		Thread sender = new Thread("KNXnet/IP Server Sender") {
+			@Override
+			public void run() {
+				sendLoop();
+			}
+		};
+		sender.setDaemon(true);
+		sender.start();
+	}
+
+	/**
+	 * Stops the server.
+	 */
+	public void stop() {
+		_running = false;
+		_socket.close();
+	}
+
+	/**
+	 * Sends a group write of a simulated bus device to the client.
+	 *
+	 * @param tpdu
+	 *        The transport layer PDU, starting with the APCI.
+	 * @return Whether the frame was accepted, <code>false</code> if the gateway buffer is full.
+	 */
+	public boolean sendGroupWrite(int rawAddress, byte[] tpdu) {
+		return offer(new CEMILData(CEMILData.MC_LDATA_IND, DEVICE_ADDRESS, new GroupAddress(rawAddress), tpdu,
+				Priority.LOW));
+	}
+
+	/**
+	 * Closes the tunnel from the server side, as a gateway does when it restarts. Frames from the
+	 * bus are dropped until the client has reconnected.
+	 */
+	public void disconnect() throws IOException {
+		InetSocketAddress control = _control;
+		if (_routing || control == null) {
+			return;
+		}
+		_client = null;
+		send(PacketHelper.toPacket(new DisconnectRequest(CHANNEL_ID,
+				new HPAI(HPAI.IPV4_UDP, new InetSocketAddress(InetAddress.getLoopbackAddress(), getPort())))), control);
+		L.info("Tunnel disconnected by server");
+	}
+
+	private boolean offer(CEMI frame) {
+		if (_outgoing.offer(frame)) {
+			return true;
+		}
+		_overflows.incrementAndGet();
+		return false;
+	}
+
+	private void receiveLoop() {
+		byte[] buffer = new byte[512];
+		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		while (_running) {
+			try {
+				packet.setLength(buffer.length);
+				_socket.receive(packet);
+				handle(buffer, packet.getLength(), (InetSocketAddress) packet.getSocketAddress());
+			} catch (SocketException e) {
+				// Closed.
+				return;
+			} catch (IOException | KNXFormatException | RuntimeException e) {
+				L.log(Level.WARNING, "Error handling KNXnet/IP frame", e);
+			}
+		}
+	}
+
+	private void handle(byte[] buffer, int length, InetSocketAddress sender) throws KNXFormatException, IOException {
+		KNXnetIPHeader header = new KNXnetIPHeader(buffer, 0);
+		int offset = header.getStructLength();
+		switch (header.getServiceType()) {
+		case KNXnetIPHeader.CONNECT_REQ: {
+			ConnectRequest request = new ConnectRequest(buffer, offset);
+			InetSocketAddress control = endpoint(request.getControlEndpoint(), sender);
+			InetSocketAddress data = endpoint(request.getDataEndpoint(), sender);
+			synchronized (_ackLock) {
+				_sendSeq = 0;
+				_receiveSeq = 0;
+				_ackedSeq = -1;
+			}
+			_outgoing.clear();
+			send(PacketHelper.toPacket(new ConnectResponse(CHANNEL_ID, ErrorCodes.NO_ERROR,
+					new HPAI(HPAI.IPV4_UDP, new InetSocketAddress(InetAddress.getLoopbackAddress(), getPort())),
+					new TunnelCRD(TUNNEL_ADDRESS))), control);
+			_control = control;
+			_client = data;
+			L.info("Tunnel connected to " + data);
+			break;
+		}
+		case KNXnetIPHeader.CONNECTIONSTATE_REQ: {
+			ConnectionstateRequest request = new ConnectionstateRequest(buffer, offset);
+			int status = request.getChannelID() == CHANNEL_ID && _client != null ? ErrorCodes.NO_ERROR
+					: ErrorCodes.CONNECTION_ID;
+			send(PacketHelper.toPacket(new ConnectionstateResponse(request.getChannelID(), status)),
+					endpoint(request.getControlEndpoint(), sender));
+			break;
+		}
+		case KNXnetIPHeader.DISCONNECT_REQ: {
+			DisconnectRequest request = new DisconnectRequest(buffer, offset);
+			_client = null;
+			send(PacketHelper.toPacket(new DisconnectResponse(request.getChannelID(), ErrorCodes.NO_ERROR)),
+					endpoint(request.getEndpoint(), sender));
+			L.info("Tunnel disconnected");
+			break;
+		}
+		case KNXnetIPHeader.DISCONNECT_RES:
+			_client = null;
+			break;
+		case KNXnetIPHeader.TUNNELING_REQ: {
+			ServiceRequest request = PacketHelper.getServiceRequest(header, buffer, offset);
+			int seq = request.getSequenceNumber();
+			int expected;
+			synchronized (_ackLock) {
+				expected = _receiveSeq;
+				if (seq == expected) {
+					_receiveSeq = (seq + 1) & 0xFF;
+				}
+			}
+			if (seq != expected && seq != ((expected - 1) & 0xFF)) {
+				// Out of sequence, the client will repeat it.
+				break;
+			}
+			send(PacketHelper.toPacket(new ServiceAck(KNXnetIPHeader.TUNNELING_ACK, CHANNEL_ID, seq,
+					ErrorCodes.NO_ERROR)), sender);
+			if (seq == expected) {
+				received((CEMILData) request.getCEMI());
+			}
+			break;
+		}
+		case KNXnetIPHeader.TUNNELING_ACK: {
+			ServiceAck ack = new ServiceAck(header.getServiceType(), buffer, offset);
+			synchronized (_ackLock) {
+				_ackedSeq = ack.getSequenceNumber();
+				_ackLock.notifyAll();
+			}
+			break;
+		}
+		case KNXnetIPHeader.ROUTING_IND: {
+			if (!_routing) {
+				break;
+			}
+			CEMILData frame = (CEMILData) new RoutingIndication(buffer, offset, length - offset).getCEMI();
+			if (frame.getSource().equals(DEVICE_ADDRESS)) {
+				// Own frame looped back.
+				break;
+			}
+			received(frame);
+			break;
+		}
+		default:
+			L.fine("Ignoring KNXnet/IP service " + Integer.toHexString(header.getServiceType()));
+		}
+	}
+
+	private void received(CEMILData frame) {
+		KNXAddress destination = frame.getDestination();
+		if (frame.getMessageCode() == CEMILData.MC_LDATA_REQ) {
+			// Confirm after the frame has been "sent" on the bus.
+			offer(new CEMILData(CEMILData.MC_LDATA_CON, TUNNEL_ADDRESS, destination, frame.getPayload(),
+					frame.getPriority(), false));
+		}
+		if (destination instanceof GroupAddress) {
+			_bus.received(destination.getRawAddress(), frame.getPayload());
+		}
+	}
+
+	private static InetSocketAddress endpoint(HPAI hpai, InetSocketAddress sender) {
+		if (hpai.getAddress().isAnyLocalAddress() || hpai.getPort() == 0) {
+			// NAT mode, answer to the sender.
+			return sender;
+		}
+		return new InetSocketAddress(hpai.getAddress(), hpai.getPort());
+	}
+
+	private void sendLoop() {
+		while (_running) {
+			try {
+				CEMI frame = _outgoing.take();
+				if (_busTimeNanos > 0) {
+					TimeUnit.NANOSECONDS.sleep(_busTimeNanos);
+				}
+				InetSocketAddress client = _client;
+				if (client == null) {
+					continue;
+				}
+				if (_routing) {
+					send(PacketHelper.toPacket(new RoutingIndication(frame)), client);
+				} else {
+					sendTunneled(frame, client);
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (IOException e) {
+				if (_running) {
+					L.log(Level.WARNING, "Error sending KNXnet/IP frame", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends a frame through the tunnel and waits for its acknowledge, repeating it once.
+	 */
+	private void sendTunneled(CEMI frame, InetSocketAddress client) throws IOException, InterruptedException {
+		int seq;
+		synchronized (_ackLock) {
+			seq = _sendSeq;
+			_sendSeq = (seq + 1) & 0xFF;
+		}
+		byte[] packet = PacketHelper.toPacket(new ServiceRequest(KNXnetIPHeader.TUNNELING_REQ, CHANNEL_ID, seq, frame));
+		for (int attempt = 0; attempt < 2; attempt++) {
+			if (attempt > 0) {
+				_repetitions.incrementAndGet();
+			}
+			send(packet, client);
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACK_TIMEOUT);
+			synchronized (_ackLock) {
+				while (_ackedSeq != seq) {
+					long wait = deadline - System.nanoTime();
+					if (wait <= 0) {
+						break;
+					}
+					TimeUnit.NANOSECONDS.timedWait(_ackLock, wait);
+				}
+				if (_ackedSeq == seq) {
+					return;
+				}
+			}
+		}
+		synchronized (_ackLock) {
+			// Reuse the sequence number, the client may still be waiting for it.
+			_sendSeq = seq;
+		}
+		L.warning("No acknowledge for tunneling request " + seq + ", dropping it");
+	}
+
+	private void send(byte[] packet, SocketAddress target) throws IOException {
+		_socket.send(new DatagramPacket(packet, packet.length, target));
+	}
+
+}
@@ -0,0 +1,517 @@
+package com.tellerulam.knx2mqtt.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonValue;
+import com.tellerulam.knx2mqtt.GroupAddressInfo;
+import com.tellerulam.knx2mqtt.GroupAddressManager;
+import com.tellerulam.knx2mqtt.KNXConnector;
+import com.tellerulam.knx2mqtt.KNXLinks;
+import com.tellerulam.knx2mqtt.LatencyHistogram;
+import com.tellerulam.knx2mqtt.MQTTHandler;
+import com.tellerulam.knx2mqtt.Site;
+import com.tellerulam.knx2mqtt.StatusPublisher;
+
+/**
+ * End-to-end load test of the bridge without KNX hardware or external broker.
+ *
+ * <p>
+ * Runs the real {@link KNXConnector}, {@link StatusPublisher} and {@link MQTTHandler} against a
+ * {@link KnxIpServer} and a {@link MqttBroker} in the same process. Simulated bus devices send group
+ * writes at a fixed rate (KNX to MQTT), and a simulated MQTT client sends a mix of set and get
+ * commands (MQTT to KNX). All group addresses use DPT 12.001, the values carry a sequence number,
+ * so that every message can be matched with the telegram it was created from.
+ * </p>
+ *
+ * <p>
+ * For each direction, the number of sent and arrived messages, the throughput and the latency
+ * percentiles are reported. In the MQTT to KNX direction, commands that did not arrive on the bus
+ * were usually superseded by a newer value for the same group address in the bridge's send queue.
+ * The simulated devices answer group reads. A get command counts as arrived when a status message of
+ * its group address is published, be it the read response, a cached value or any other telegram.
+ * </p>
+ *
+ * <p>
+ * Options are given as <code>key=value</code> arguments. Options with a dot in their name are
+ * passed to the bridge, as on its command line, e.g. <code>knx.sendrate=100</code> or
+ * <code>mqtt.async=true</code>. Test options are:
+ * </p>
+ *
+ * <ul>
+ * <li><code>mode</code>: <code>tunneling</code> (default) or <code>routing</code></li>
+ * <li><code>links</code>: Number of tunnels to the simulated bus, each through its own gateway,
+ * default 1</li>
+ * <li><code>sites</code>: Number of sites served by the bridge, each with its own simulated bus,
+ * gateways and topic prefix, default 1. The rates are the totals over all sites.</li>
+ * <li><code>duration</code>: Duration of the test in seconds, default 10</li>
+ * <li><code>groupaddresses</code>: Number of group addresses, default 1000</li>
+ * <li><code>inrate</code>: Telegrams per second from the bus, default 200</li>
+ * <li><code>outrate</code>: MQTT commands per second, default 20</li>
+ * <li><code>gets</code>: Percentage of get commands, default 20</li>
+ * <li><code>buffer</code>: Number of frames buffered by the gateway, default 256</li>
+ * <li><code>bustime</code>: Bus time per frame in microseconds, default 0</li>
+ * <li><code>drain</code>: Seconds to wait for outstanding messages after the test, default 3</li>
+ * <li><code>disconnect</code>: Seconds after the start at which the gateway closes the tunnel, as
+ * on a restart, to measure the time until the bridge has reconnected, default 0 (never)</li>
+ * </ul>
+ */
+public class LoadTest {
+
+	private static final String TOPIC_PREFIX = "knx/";
+
+	private static final String STATUS = "status/";
+
+	private static final String NAME_PREFIX = "Load/Group ";
+
+	private static final int FIRST_ADDRESS = 0x0800;
+
+	/**
+	 * Marks the values of set commands and read responses. In routing mode, the bridge receives its
+	 * own group writes through the multicast loopback and publishes them as status.
+	 */
+	private static final int SET_FLAG = 0x40000000;
+
+	private final Map<String, String> _options;
+
+	private final int _groupAddresses;
+
+	private final int _duration;
+
+	private final int _inRate;
+
+	private final int _outRate;
+
+	private final int _getPercentage;
+
+	private final String[] _names;
+
+	/**
+	 * Send times of the telegrams from the bus, by sequence number.
+	 */
+	private final AtomicLongArray _upSent;
+
+	private final AtomicLong _upSentCount = new AtomicLong();
+
+	private final AtomicLong _upArrived = new AtomicLong();
+
+	private final LatencyHistogram _upLatency = new LatencyHistogram();
+
+	/**
+	 * Send times of the set commands, by sequence number.
+	 */
+	private final AtomicLongArray _setSent;
+
+	private final AtomicLong _setSentCount = new AtomicLong();
+
+	private final AtomicLong _setArrived = new AtomicLong();
+
+	private final LatencyHistogram _setLatency = new LatencyHistogram();
+
+	/**
+	 * Send time of the oldest unanswered get command, by site and group address index.
+	 */
+	private final AtomicLongArray _getPending;
+
+	/**
+	 * Number of unanswered get commands, by site and group address index.
+	 */
+	private final AtomicIntegerArray _getWaiting;
+
+	private final AtomicLong _getSentCount = new AtomicLong();
+
+	private final AtomicLong _getArrived = new AtomicLong();
+
+	private final LatencyHistogram _getLatency = new LatencyHistogram();
+
+	private final int _sites;
+
+	/**
+	 * Topic prefixes of the sites.
+	 */
+	private final String[] _prefixes;
+
+	/**
+	 * Connection state topics of the sites that are connected to KNX.
+	 */
+	private final Set<String> _connected = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * By site, the tunneling servers of the same simulated bus, or the router.
+	 */
+	private KnxIpServer[][] _servers;
+
+	private MqttBroker _broker;
+
+	LoadTest(Map<String, String> options) {
+		_options = options;
+		_groupAddresses = intOption("groupaddresses", 1000);
+		_duration = intOption("duration", 10);
+		_inRate = intOption("inrate", 200);
+		_outRate = intOption("outrate", 20);
+		_getPercentage = intOption("gets", 20);
+		_sites = "routing".equals(options.get("mode")) ? 1 : Math.max(1, intOption("sites", 1));
+		_prefixes = new String[_sites];
+		for (int n = 0; n < _sites; n++) {
+			_prefixes[n] = _sites == 1 ? TOPIC_PREFIX : TOPIC_PREFIX + siteName(n) + "/";
+		}
+		_names = new String[_groupAddresses];
+		for (int n = 0; n < _groupAddresses; n++) {
+			_names[n] = NAME_PREFIX + n;
+		}
+		// One slot per message plus some slack for timer inaccuracy.
+		_upSent = new AtomicLongArray(_inRate * _duration + 1024);
+		_setSent = new AtomicLongArray(_outRate * _duration + 1024);
+		_getPending = new AtomicLongArray(_sites * _groupAddresses);
+		_getWaiting = new AtomicIntegerArray(_sites * _groupAddresses);
+	}
+
+	private static String siteName(int site) {
+		return "site" + (site + 1);
+	}
+
+	private int intOption(String name, int defaultValue) {
+		String value = _options.get(name);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	void run() throws Exception {
+		boolean routing = "routing".equals(_options.get("mode"));
+		int links = routing ? 1 : Math.max(1, intOption("links", 1));
+		_servers = new KnxIpServer[_sites][links];
+		String[] gateways = new String[_sites];
+		for (int site = 0; site < _sites; site++) {
+			final int siteIndex = site;
+			StringBuilder siteGateways = new StringBuilder();
+			for (int n = 0; n < links; n++) {
+				KnxIpServer server = new KnxIpServer(routing, 3671, intOption("buffer", 256), intOption("bustime", 0),
+						new KnxIpServer.Bus() {
+							@Override
+							public void received(int rawAddress, byte[] tpdu) {
+								onBus(siteIndex, rawAddress, tpdu);
+							}
+						});
+				server.start();
+				_servers[site][n] = server;
+				if (n > 0) {
+					siteGateways.append(',');
+				}
+				siteGateways.append(routing ? KnxIpServer.ROUTING_GROUP : "127.0.0.1").append(':')
+						.append(server.getPort());
+			}
+			gateways[site] = siteGateways.toString();
+		}
+		_broker = new MqttBroker(new MqttBroker.Listener() {
+			@Override
+			public void published(String topic, byte[] payload) {
+				onPublished(topic, payload);
+			}
+		});
+		_broker.start();
+
+		System.setProperty("knx2mqtt.knx.type", routing ? "ROUTING" : "TUNNELING");
+		if (_sites == 1) {
+			System.setProperty("knx2mqtt.knx.ip", gateways[0]);
+		} else {
+			StringBuilder names = new StringBuilder();
+			for (int site = 0; site < _sites; site++) {
+				if (site > 0) {
+					names.append(',');
+				}
+				names.append(siteName(site));
+				System.setProperty("knx2mqtt.site." + siteName(site) + ".knx.ip", gateways[site]);
+			}
+			System.setProperty("knx2mqtt.sites", names.toString());
+		}
+		System.setProperty("knx2mqtt.knx.localip", "127.0.0.1");
+		System.setProperty("knx2mqtt.mqtt.server", _broker.getServerURI());
+		System.setProperty("knx2mqtt.mqtt.clientid", "knx2mqtt-loadtest");
+		System.setProperty("knx2mqtt.mqtt.topic", TOPIC_PREFIX);
+		for (Map.Entry<String, String> option : _options.entrySet()) {
+			if (option.getKey().indexOf('.') >= 0) {
+				System.setProperty("knx2mqtt." + option.getKey(), option.getValue());
+			}
+		}
+
+		List<Site> sites = Site.fromConfig();
+		for (Site site : sites) {
+			GroupAddressManager addressManager = site.getAddressManager();
+			for (int n = 0; n < _groupAddresses; n++) {
+				GroupAddressInfo gai = new GroupAddressInfo(_names[n], FIRST_ADDRESS + n);
+				gai.setDpt("12.001");
+				addressManager.add(gai);
+			}
+		}
+		MQTTHandler mqtt = MQTTHandler.create(sites);
+		StatusPublisher publisher = StatusPublisher.launch(mqtt);
+		for (Site site : sites) {
+			KNXLinks.launch(site, mqtt, publisher);
+		}
+
+		long deadline = System.currentTimeMillis() + 30 * 1000;
+		while (_connected.size() < _sites) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Bridge did not connect to the KNXnet/IP server.");
+			}
+			Thread.sleep(50);
+		}
+
+		System.out.println("Running for " + _duration + "s: " + _inRate + " telegrams/s from the bus, " + _outRate
+				+ " commands/s from MQTT (" + _getPercentage + "% get) on " + _groupAddresses + " group addresses ("
+				+ (routing ? "routing" : links + " tunnel(s)") + (_sites > 1 ? " in each of " + _sites + " sites" : "")
+				+ ")");
+		Thread up = new Thread("Load Bus Devices") {
+			@Override
+			public void run() {
+				pace(_inRate, new Runnable() {
+					@Override
+					public void run() {
+						sendFromBus();
+					}
+				});
+			}
+		};
+		Thread down = new Thread("Load MQTT Client") {
+			@Override
+			public void run() {
+				pace(_outRate, new Runnable() {
+					private final Random _random = new Random(42);
+
+					@Override
+					public void run() {
+						sendCommand(_random);
+					}
+				});
+			}
+		};
+		long start = System.nanoTime();
+		up.start();
+		down.start();
+		int disconnect = intOption("disconnect", 0);
+		long reconnectMillis = -1;
+		if (disconnect > 0 && disconnect < _duration) {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(disconnect));
+			_servers[0][0].disconnect();
+			long disconnected = System.nanoTime();
+			while (!_servers[0][0].isConnected() && up.isAlive()) {
+				Thread.sleep(1);
+			}
+			if (_servers[0][0].isConnected()) {
+				reconnectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - disconnected);
+			}
+		}
+		up.join();
+		down.join();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Thread.sleep(TimeUnit.SECONDS.toMillis(intOption("drain", 3)));
+
+		report("KNX -> MQTT", "telegrams", _upSentCount.get(), _upArrived.get(), seconds, _upLatency);
+		report("MQTT -> KNX", "sets", _setSentCount.get(), _setArrived.get(), seconds, _setLatency);
+		report("MQTT -> KNX", "gets", _getSentCount.get(), _getArrived.get(), seconds, _getLatency);
+		long overflows = 0;
+		long repetitions = 0;
+		for (KnxIpServer[] siteServers : _servers) {
+			for (KnxIpServer server : siteServers) {
+				overflows += server.getOverflowCount();
+				repetitions += server.getRepetitionCount();
+			}
+		}
+		System.out.println("Gateway: " + overflows + " frames dropped (buffer full), " + repetitions
+				+ " repeated (no acknowledge)");
+		if (disconnect > 0) {
+			System.out.println("Gateway: tunnel closed after " + disconnect + "s, "
+					+ (reconnectMillis < 0 ? "bridge did not reconnect" : "bridge reconnected after " + reconnectMillis + "ms"));
+		}
+
+		for (KnxIpServer[] siteServers : _servers) {
+			for (KnxIpServer server : siteServers) {
+				server.stop();
+			}
+		}
+		_broker.stop();
+	}
+
+	/**
+	 * Calls the given action at the given rate for the test duration.
+	 */
+	private void pace(int rate, Runnable action) {
+		if (rate <= 0) {
+			return;
+		}
+		long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(_duration);
+		long next = System.nanoTime();
+		while (next < end) {
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			action.run();
+			next += interval;
+		}
+	}
+
+	private void sendFromBus() {
+		int seq = (int) _upSentCount.incrementAndGet();
+		if (seq < _upSent.length()) {
+			_upSent.set(seq, System.nanoTime());
+		}
+		byte[] tpdu = groupWrite(seq);
+		for (KnxIpServer server : _servers[seq % _sites]) {
+			// All tunnels see the same bus.
+			server.sendGroupWrite(FIRST_ADDRESS + seq % _groupAddresses, tpdu);
+		}
+	}
+
+	private void sendCommand(Random random) {
+		int site = random.nextInt(_sites);
+		int index = random.nextInt(_groupAddresses);
+		if (random.nextInt(100) < _getPercentage) {
+			_getSentCount.incrementAndGet();
+			_getWaiting.incrementAndGet(site * _groupAddresses + index);
+			_getPending.compareAndSet(site * _groupAddresses + index, 0, System.nanoTime());
+			_broker.publish(_prefixes[site] + "get/" + _names[index], new byte[0], false);
+		} else {
+			int seq = (int) _setSentCount.incrementAndGet();
+			if (seq < _setSent.length()) {
+				_setSent.set(seq, System.nanoTime());
+			}
+			_broker.publish(_prefixes[site] + "set/" + _names[index],
+					Integer.toString(SET_FLAG | seq).getBytes(StandardCharsets.UTF_8), false);
+		}
+	}
+
+	/**
+	 * The TPDU of a group write of the given 4 byte value.
+	 */
+	private static byte[] groupWrite(int value) {
+		return new byte[] { 0x00, (byte) 0x80, (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8),
+				(byte) value };
+	}
+
+	private void onBus(int site, int rawAddress, byte[] tpdu) {
+		long now = System.nanoTime();
+		int apci = ((tpdu[0] & 0x03) << 8) | (tpdu[1] & 0xC0);
+		if (apci == 0x080 && tpdu.length == 6) {
+			int seq = ((tpdu[2] & 0x3F) << 24) | ((tpdu[3] & 0xFF) << 16) | ((tpdu[4] & 0xFF) << 8) | (tpdu[5] & 0xFF);
+			_setArrived.incrementAndGet();
+			if (seq > 0 && seq < _setSent.length()) {
+				_setLatency.record((now - _setSent.get(seq)) / 1000);
+			}
+		} else if (apci == 0x000) {
+			byte[] response = groupWrite(SET_FLAG);
+			response[1] = 0x40;
+			for (KnxIpServer server : _servers[site]) {
+				server.sendGroupWrite(rawAddress, response);
+			}
+		}
+	}
+
+	private void onPublished(String topic, byte[] payload) {
+		int site = statusSite(topic);
+		if (site >= 0) {
+			long now = System.nanoTime();
+			answerGets(site, topic.substring(_prefixes[site].length() + STATUS.length()), now);
+			JsonValue value = Json.parse(new String(payload, StandardCharsets.UTF_8)).asObject().get("val");
+			long seq = value == null || !value.isNumber() ? 0 : value.asLong();
+			if ((seq & SET_FLAG) != 0) {
+				return;
+			}
+			if (seq > 0 && seq < _upSent.length()) {
+				long sent = _upSent.getAndSet((int) seq, 0);
+				if (sent == 0) {
+					// Published again as answer to a get command.
+					return;
+				}
+				_upLatency.record((now - sent) / 1000);
+			}
+			_upArrived.incrementAndGet();
+		} else if (topic.endsWith("/connected")) {
+			if ("2".equals(new String(payload, StandardCharsets.UTF_8))) {
+				_connected.add(topic);
+			} else {
+				_connected.remove(topic);
+			}
+		}
+	}
+
+	/**
+	 * The index of the site of the given status topic, or -1 for other topics.
+	 */
+	private int statusSite(String topic) {
+		for (int n = 0; n < _sites; n++) {
+			String prefix = _prefixes[n];
+			if (topic.startsWith(STATUS, prefix.length()) && topic.startsWith(prefix)) {
+				return n;
+			}
+		}
+		return -1;
+	}
+
+	private void answerGets(int site, String name, long now) {
+		if (!name.startsWith(NAME_PREFIX)) {
+			return;
+		}
+		int slot = site * _groupAddresses + Integer.parseInt(name.substring(NAME_PREFIX.length()));
+		int waiting = _getWaiting.getAndSet(slot, 0);
+		if (waiting > 0) {
+			_getArrived.addAndGet(waiting);
+			long sent = _getPending.getAndSet(slot, 0);
+			if (sent != 0) {
+				_getLatency.record((now - sent) / 1000);
+			}
+		}
+	}
+
+	private static void report(String direction, String kind, long sent, long arrived, double seconds,
+			LatencyHistogram latency) {
+		if (sent == 0) {
+			return;
+		}
+		long lost = Math.max(0, sent - arrived);
+		System.out.println(String.format("%s %-9s sent %8d, arrived %8d, lost %7d (%5.1f%%), %8.1f/s, "
+				+ "latency p50 %7dus, p99 %7dus, avg %7dus", direction, kind, Long.valueOf(sent), Long.valueOf(arrived),
+				Long.valueOf(lost), Double.valueOf(100.0 * lost / sent), Double.valueOf(arrived / seconds),
+				Long.valueOf(latency.getPercentile(50)), Long.valueOf(latency.getPercentile(99)),
+				Long.valueOf(latency.getAverage())));
+	}
+
+	/**
+	 * Runs a load test with the given <code>key=value</code> options.
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			if (keyValue.length != 2) {
+				System.err.println("Invalid argument (no =): " + arg);
+				System.exit(1);
+			}
+			options.put(keyValue[0], keyValue[1]);
+		}
+		int status = 0;
+		try {
+			new LoadTest(options).run();
+		} catch (Exception e) {
+			e.printStackTrace();
+			status = 1;
+		}
+		// The bridge threads do not terminate on their own.
+		System.exit(status);
+	}
+
+}
@@ -0,0 +1,439 @@
+package com.tellerulam.knx2mqtt.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Minimal in-process MQTT 3.1.1 broker for load tests.
+ *
+ * <p>
+ * Supports what knx2mqtt and simple test clients need: clean sessions, subscriptions with
+ * wildcards, retained messages and wills. Incoming messages of all QoS levels are acknowledged,
+ * but delivered to subscribers with QoS 0. Every published message is also reported to an optional
+ * {@link Listener}, so that a test can observe the traffic without the overhead of a subscribing
+ * client.
+ * </p>
+ */
+public class MqttBroker {
+	private static final Logger L = Logger.getLogger(MqttBroker.class.getName());
+
+	private static final int CONNECT = 1;
+
+	private static final int CONNACK = 2;
+
+	private static final int PUBLISH = 3;
+
+	private static final int PUBACK = 4;
+
+	private static final int PUBREC = 5;
+
+	private static final int PUBREL = 6;
+
+	private static final int PUBCOMP = 7;
+
+	private static final int SUBSCRIBE = 8;
+
+	private static final int SUBACK = 9;
+
+	private static final int UNSUBSCRIBE = 10;
+
+	private static final int UNSUBACK = 11;
+
+	private static final int PINGREQ = 12;
+
+	private static final int PINGRESP = 13;
+
+	private static final int DISCONNECT = 14;
+
+	/**
+	 * Observer of all messages published to the broker.
+	 */
+	public interface Listener {
+		/**
+		 * Called from the thread of the publishing client.
+		 */
+		void published(String topic, byte[] payload);
+	}
+
+	private final ServerSocket _serverSocket;
+
+	private final List<Session> _sessions = new CopyOnWriteArrayList<>();
+
+	private final Map<String, byte[]> _retained = new ConcurrentHashMap<>();
+
+	private final Listener _listener;
+
+	/**
+	 * Creates a {@link MqttBroker} on an ephemeral port of the loopback interface.
+	 */
+	public MqttBroker(Listener listener) throws IOException {
+		_listener = listener;
+		_serverSocket = new ServerSocket();
+		_serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+	}
+
+	/**
+	 * The server URI for MQTT clients.
+	 */
+	public String getServerURI() {
+		return "tcp://127.0.0.1:" + _serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Starts accepting connections.
+	 */
+	public void start() {
+		Thread acceptor = new Thread("MQTT Broker Acceptor") {
+			@Override
+			public void run() {
+				acceptLoop();
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Stops the broker and closes all connections.
+	 */
+	public void stop() {
+		try {
+			_serverSocket.close();
+		} catch (IOException e) {
+			// Ignore.
+		}
+		for (Session session : _sessions) {
+			session.close();
+		}
+	}
+
+	/**
+	 * Publishes a message on behalf of a test client.
+	 */
+	public void publish(String topic, byte[] payload, boolean retain) {
+		route(topic, payload, retain);
+	}
+
+	private void acceptLoop() {
+		while (!_serverSocket.isClosed()) {
+			try {
+				Socket socket = _serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				final Session session = new Session(socket);
+				_sessions.add(session);
+				Thread reader = new Thread("MQTT Broker Session " + socket.getRemoteSocketAddress()) {
+					@Override
+					public void run() {
+						session.run();
+					}
+				};
+				reader.setDaemon(true);
+				reader.start();
+			} catch (IOException e) {
+				if (!_serverSocket.isClosed()) {
+					L.log(Level.WARNING, "Error accepting MQTT connection", e);
+				}
+			}
+		}
+	}
+
+	private void route(String topic, byte[] payload, boolean retain) {
+		if (_listener != null) {
+			_listener.published(topic, payload);
+		}
+		if (retain) {
+			if (payload.length == 0) {
+				_retained.remove(topic);
+			} else {
+				_retained.put(topic, payload);
+			}
+		}
+		for (Session session : _sessions) {
+			if (session.isSubscribed(topic)) {
+				session.deliver(topic, payload, false);
+			}
+		}
+	}
+
+	/**
+	 * Whether the given topic matches the given filter with MQTT wildcards.
+	 */
+	static boolean matches(String filter, String topic) {
+		if (topic.startsWith("$") && (filter.startsWith("+") || filter.startsWith("#"))) {
+			return false;
+		}
+		int f = 0;
+		int t = 0;
+		int filterLength = filter.length();
+		int topicLength = topic.length();
+		while (f < filterLength) {
+			char c = filter.charAt(f);
+			if (c == '#') {
+				return true;
+			}
+			if (c == '+') {
+				while (t < topicLength && topic.charAt(t) != '/') {
+					t++;
+				}
+				f++;
+				continue;
+			}
+			if (t >= topicLength) {
+				// "a/#" also matches "a".
+				return filter.startsWith("/#", f);
+			}
+			if (topic.charAt(t) != c) {
+				return false;
+			}
+			f++;
+			t++;
+		}
+		return t == topicLength;
+	}
+
+	private final class Session {
+		private final Socket _socket;
+
+		private final OutputStream _out;
+
+		private final List<String> _filters = new CopyOnWriteArrayList<>();
+
+		private String _willTopic;
+
+		private byte[] _willPayload;
+
+		private boolean _willRetain;
+
+		Session(Socket socket) throws IOException {
+			_socket = socket;
+			_out = new BufferedOutputStream(socket.getOutputStream());
+		}
+
+		boolean isSubscribed(String topic) {
+			for (String filter : _filters) {
+				if (matches(filter, topic)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void run() {
+			boolean clean = false;
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(_socket.getInputStream()));
+				for (;;) {
+					int header = in.read();
+					if (header < 0) {
+						break;
+					}
+					byte[] body = new byte[readLength(in)];
+					in.readFully(body);
+					if (header >> 4 == DISCONNECT) {
+						clean = true;
+						break;
+					}
+					handle(header, body);
+				}
+			} catch (IOException e) {
+				// Connection lost.
+			} finally {
+				_sessions.remove(this);
+				close();
+				if (!clean && _willTopic != null) {
+					route(_willTopic, _willPayload, _willRetain);
+				}
+			}
+		}
+
+		private void handle(int header, byte[] body) throws IOException {
+			Reader reader = new Reader(body);
+			switch (header >> 4) {
+			case CONNECT: {
+				reader.readString(); // Protocol name
+				reader.readByte(); // Protocol level
+				int flags = reader.readByte();
+				reader.readShort(); // Keep alive
+				reader.readString(); // Client ID
+				if ((flags & 0x04) != 0) {
+					_willTopic = reader.readString();
+					_willPayload = reader.readBinary();
+					_willRetain = (flags & 0x20) != 0;
+				}
+				send(CONNACK << 4, new byte[] { 0, 0 });
+				break;
+			}
+			case PUBLISH: {
+				int qos = (header >> 1) & 0x03;
+				String topic = reader.readString();
+				int packetId = qos > 0 ? reader.readShort() : 0;
+				byte[] payload = reader.readRemaining();
+				if (qos == 1) {
+					send(PUBACK << 4, packetIdBytes(packetId));
+				} else if (qos == 2) {
+					send(PUBREC << 4, packetIdBytes(packetId));
+				}
+				route(topic, payload, (header & 0x01) != 0);
+				break;
+			}
+			case PUBREL:
+				send(PUBCOMP << 4, packetIdBytes(reader.readShort()));
+				break;
+			case SUBSCRIBE: {
+				int packetId = reader.readShort();
+				List<String> filters = new ArrayList<>();
+				while (reader.hasRemaining()) {
+					filters.add(reader.readString());
+					reader.readByte(); // Requested QoS
+				}
+				ByteArrayOutputStream ack = new ByteArrayOutputStream();
+				ack.write(packetIdBytes(packetId));
+				for (int n = 0; n < filters.size(); n++) {
+					ack.write(0);
+				}
+				_filters.addAll(filters);
+				send((SUBACK << 4), ack.toByteArray());
+				for (Entry<String, byte[]> retained : _retained.entrySet()) {
+					for (String filter : filters) {
+						if (matches(filter, retained.getKey())) {
+							deliver(retained.getKey(), retained.getValue(), true);
+							break;
+						}
+					}
+				}
+				break;
+			}
+			case UNSUBSCRIBE: {
+				int packetId = reader.readShort();
+				while (reader.hasRemaining()) {
+					_filters.remove(reader.readString());
+				}
+				send(UNSUBACK << 4, packetIdBytes(packetId));
+				break;
+			}
+			case PINGREQ:
+				send(PINGRESP << 4, new byte[0]);
+				break;
+			default:
+				// PUBACK, PUBREC and PUBCOMP of messages delivered with QoS 0 do not occur.
+				L.fine("Ignoring MQTT packet type " + (header >> 4));
+			}
+		}
+
+		void deliver(String topic, byte[] payload, boolean retained) {
+			byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+			byte[] body = new byte[2 + topicBytes.length + payload.length];
+			body[0] = (byte) (topicBytes.length >> 8);
+			body[1] = (byte) topicBytes.length;
+			System.arraycopy(topicBytes, 0, body, 2, topicBytes.length);
+			System.arraycopy(payload, 0, body, 2 + topicBytes.length, payload.length);
+			try {
+				send((PUBLISH << 4) | (retained ? 1 : 0), body);
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		private synchronized void send(int header, byte[] body) throws IOException {
+			_out.write(header);
+			int length = body.length;
+			do {
+				int digit = length & 0x7F;
+				length >>>= 7;
+				_out.write(length > 0 ? digit | 0x80 : digit);
+			} while (length > 0);
+			_out.write(body);
+			_out.flush();
+		}
+
+		void close() {
+			try {
+				_socket.close();
+			} catch (IOException e) {
+				// Ignore.
+			}
+		}
+	}
+
+	private static int readLength(DataInputStream in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 28; shift += 7) {
+			int digit = in.read();
+			if (digit < 0) {
+				throw new EOFException();
+			}
+			result |= (digit & 0x7F) << shift;
+			if ((digit & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Malformed remaining length");
+	}
+
+	private static byte[] packetIdBytes(int packetId) {
+		return new byte[] { (byte) (packetId >> 8), (byte) packetId };
+	}
+
+	/**
+	 * Reads the fields of a packet body.
+	 */
+	private static final class Reader {
+		private final byte[] _data;
+
+		private int _pos;
+
+		Reader(byte[] data) {
+			_data = data;
+		}
+
+		boolean hasRemaining() {
+			return _pos < _data.length;
+		}
+
+		int readByte() {
+			return _data[_pos++] & 0xFF;
+		}
+
+		int readShort() {
+			return (readByte() << 8) | readByte();
+		}
+
+		byte[] readBinary() {
+			int length = readShort();
+			byte[] result = new byte[length];
+			System.arraycopy(_data, _pos, result, 0, length);
+			_pos += length;
+			return result;
+		}
+
+		String readString() {
+			return new String(readBinary(), StandardCharsets.UTF_8);
+		}
+
+		byte[] readRemaining() {
+			byte[] result = new byte[_data.length - _pos];
+			System.arraycopy(_data, _pos, result, 0, result.length);
+			_pos = _data.length;
+			return result;
+		}
+	}
+
+}
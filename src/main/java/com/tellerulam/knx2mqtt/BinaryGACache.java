@@ -0,0 +1,231 @@
+package com.tellerulam.knx2mqtt;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory mapped group address cache in a compact binary format.
+ *
+ * <p>
+ * The file consists of a header, a table of fixed size records sorted by raw group address, and a
+ * string table with all distinct names and DPTs:
+ * </p>
+ *
+ * <pre>
+ * header:  int magic, int version, int record count, int string table offset
+ * record:  int raw address, int name offset, int DPT offset (-1 for none)
+ * string:  unsigned short length, UTF-8 bytes
+ * </pre>
+ *
+ * <p>
+ * Opening the cache only maps the file, entries are decoded when they are accessed. Instances are
+ * immutable and can be used from any thread.
+ * </p>
+ */
+final class BinaryGACache {
+
+	private static final int MAGIC = 0x4B324D43; // "K2MC"
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+
+	private static final int RECORD_SIZE = 12;
+
+	private static final int NO_STRING = -1;
+
+	private final ByteBuffer _buffer;
+
+	private final int _count;
+
+	private final int _strings;
+
+	private BinaryGACache(ByteBuffer buffer, int count, int strings) {
+		_buffer = buffer;
+		_count = count;
+		_strings = strings;
+	}
+
+	/**
+	 * Maps the given cache file.
+	 */
+	static BinaryGACache open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			long length = raf.length();
+			if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+				throw new IOException("Invalid size of group address cache " + file + ": " + length);
+			}
+			// The mapping stays valid after the file has been closed.
+			ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Unknown format of group address cache " + file);
+			}
+			int count = buffer.getInt(8);
+			int strings = buffer.getInt(12);
+			if (count < 0 || strings != HEADER_SIZE + count * RECORD_SIZE || strings > length) {
+				throw new IOException("Corrupt group address cache " + file);
+			}
+			return new BinaryGACache(buffer, count, strings);
+		}
+	}
+
+	/**
+	 * Writes the given group addresses to a cache file.
+	 *
+	 * <p>
+	 * The file is written under a temporary name in the same directory and then renamed, so that a
+	 * crash never leaves a partial cache, and a process that still maps the old file keeps reading
+	 * consistent contents.
+	 * </p>
+	 */
+	static void write(File file, Collection<GroupAddressInfo> addresses) throws IOException {
+		List<GroupAddressInfo> records = new ArrayList<>(addresses);
+		Collections.sort(records, new Comparator<GroupAddressInfo>() {
+			@Override
+			public int compare(GroupAddressInfo g1, GroupAddressInfo g2) {
+				return Integer.compare(g1.getRawAddress(), g2.getRawAddress());
+			}
+		});
+
+		// Assign string table offsets, each distinct string is stored only once.
+		Map<String, Integer> offsets = new HashMap<>();
+		List<byte[]> strings = new ArrayList<>();
+		int stringSize = 0;
+		int[] nameOffsets = new int[records.size()];
+		int[] dptOffsets = new int[records.size()];
+		for (int n = 0; n < records.size(); n++) {
+			GroupAddressInfo gai = records.get(n);
+			for (int k = 0; k < 2; k++) {
+				String value = k == 0 ? gai.getName() : gai.getDpt();
+				int offset = NO_STRING;
+				if (value != null) {
+					Integer existing = offsets.get(value);
+					if (existing == null) {
+						byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+						if (bytes.length > 0xFFFF) {
+							throw new IOException("Name too long for group address cache: " + value);
+						}
+						offset = stringSize;
+						offsets.put(value, Integer.valueOf(offset));
+						strings.add(bytes);
+						stringSize += 2 + bytes.length;
+					} else {
+						offset = existing.intValue();
+					}
+				}
+				if (k == 0) {
+					nameOffsets[n] = offset;
+				} else {
+					dptOffsets[n] = offset;
+				}
+			}
+		}
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(records.size());
+			out.writeInt(HEADER_SIZE + records.size() * RECORD_SIZE);
+			for (int n = 0; n < records.size(); n++) {
+				out.writeInt(records.get(n).getRawAddress());
+				out.writeInt(nameOffsets[n]);
+				out.writeInt(dptOffsets[n]);
+			}
+			for (byte[] bytes : strings) {
+				out.writeShort(bytes.length);
+				out.write(bytes);
+			}
+		} catch (IOException | RuntimeException e) {
+			tmp.delete();
+			throw e;
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			tmp.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Number of group addresses in the cache.
+	 */
+	int size() {
+		return _count;
+	}
+
+	/**
+	 * The raw group address of the entry with the given index.
+	 */
+	int getRawAddress(int index) {
+		return _buffer.getInt(HEADER_SIZE + index * RECORD_SIZE);
+	}
+
+	/**
+	 * The group name of the entry with the given index.
+	 */
+	String getName(int index) {
+		return getString(_buffer.getInt(HEADER_SIZE + index * RECORD_SIZE + 4));
+	}
+
+	/**
+	 * The DPT of the entry with the given index, <code>null</code> if none.
+	 */
+	String getDpt(int index) {
+		return getString(_buffer.getInt(HEADER_SIZE + index * RECORD_SIZE + 8));
+	}
+
+	/**
+	 * The index of the entry for the given raw group address, or a negative value, if there is
+	 * none.
+	 */
+	int indexOf(int rawAddress) {
+		int low = 0;
+		int high = _count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midAddress = getRawAddress(mid);
+			if (midAddress < rawAddress) {
+				low = mid + 1;
+			} else if (midAddress > rawAddress) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private String getString(int offset) {
+		if (offset == NO_STRING) {
+			return null;
+		}
+		int position = _strings + offset;
+		int length = _buffer.getShort(position) & 0xFFFF;
+		byte[] bytes = new byte[length];
+		ByteBuffer view = _buffer.duplicate();
+		view.position(position + 2);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
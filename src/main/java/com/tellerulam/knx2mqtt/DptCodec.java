@@ -0,0 +1,150 @@
+package com.tellerulam.knx2mqtt;
+
+import tuwien.auto.calimero.dptxlator.DPTXlator;
+import tuwien.auto.calimero.dptxlator.DPTXlatorBoolean;
+import tuwien.auto.calimero.dptxlator.TranslatorTypes;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXFormatException;
+
+/**
+ * Converter between KNX ASDUs and values of a single datapoint type.
+ *
+ * <p>
+ * A codec is immutable and shared between all group addresses with the same datapoint type, see
+ * {@link DptCodecs}. It can be used from any number of threads without locking: Numeric values are
+ * decoded by a stateless {@link DptDecoder}. Where a Calimero {@link DPTXlator} is required (exotic
+ * types, textual representation, encoding), each thread uses its own translator instance.
+ * </p>
+ */
+public final class DptCodec {
+
+	private final String _dpt;
+
+	private final int _mainType;
+
+	private final DptDecoder _decoder;
+
+	private final ThreadLocal<DPTXlator> _xlator;
+
+	/**
+	 * Creates a {@link DptCodec}.
+	 *
+	 * @param dpt
+	 *        The datapoint type ID, e.g. <code>9.001</code>.
+	 * @throws KNXException
+	 *         If Calimero has no translator for the given type.
+	 */
+	DptCodec(String dpt) throws KNXException {
+		_dpt = dpt;
+		// Fail early for unknown types, the translators themselves are created on demand.
+		if (!TranslatorTypes.hasTranslator(0, dpt))
+			throw new KNXException("No translator for DPT " + dpt);
+		_mainType = parseMainType(dpt);
+		_decoder = DptDecoders.forDpt(dpt);
+		_xlator = new ThreadLocal<DPTXlator>() {
+			@Override
+			protected DPTXlator initialValue() {
+				try {
+					DPTXlator result = TranslatorTypes.createTranslator(0, _dpt);
+					result.setAppendUnit(false);
+					return result;
+				} catch (KNXException e) {
+					throw new IllegalStateException("Translator for DPT " + _dpt + " vanished.", e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * The datapoint type ID.
+	 */
+	public String getDpt() {
+		return _dpt;
+	}
+
+	/**
+	 * The main number of the datapoint type, e.g. <code>9</code> for <code>9.001</code>, or
+	 * <code>-1</code> if it is not numeric.
+	 */
+	public int getMainType() {
+		return _mainType;
+	}
+
+	private static int parseMainType(String dpt) {
+		int sep = dpt.indexOf('.');
+		try {
+			return Integer.parseInt(sep < 0 ? dpt : dpt.substring(0, sep));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * The specialized decoder, or <code>null</code> if values are decoded through their textual
+	 * representation.
+	 */
+	public DptDecoder getDecoder() {
+		return _decoder;
+	}
+
+	/**
+	 * The kind of values decoded by {@link #decodeNumber(byte[])}, or <code>null</code> if there is
+	 * no specialized decoder for this type.
+	 */
+	public DptDecoder.Kind getKind() {
+		return _decoder == null ? null : _decoder.getKind();
+	}
+
+	/**
+	 * Decodes a numeric value with the specialized decoder.
+	 *
+	 * @see #getDecoder()
+	 */
+	public double decodeNumber(byte[] asdu) throws KNXFormatException {
+		return _decoder.decodeDouble(asdu);
+	}
+
+	/**
+	 * The textual representation of the given ASDU as produced by Calimero.
+	 *
+	 * @param appendUnit
+	 *        Whether to append the unit of the value.
+	 */
+	public String decodeText(byte[] asdu, boolean appendUnit) {
+		DPTXlator xlator = _xlator.get();
+		xlator.setData(asdu);
+		if (!appendUnit) {
+			return xlator.getValue();
+		}
+		xlator.setAppendUnit(true);
+		try {
+			return xlator.getValue();
+		} finally {
+			xlator.setAppendUnit(false);
+		}
+	}
+
+	/**
+	 * Creates the APDU of a group write of the given value.
+	 *
+	 * <p>
+	 * Boolean types accept the numeric values "0" and "1" in addition to their textual values.
+	 * </p>
+	 */
+	public byte[] encodeGroupWrite(String value) throws KNXException {
+		DPTXlator xlator = _xlator.get();
+		if (xlator instanceof DPTXlatorBoolean && "0".equals(value))
+			((DPTXlatorBoolean) xlator).setValue(false);
+		else if (xlator instanceof DPTXlatorBoolean && "1".equals(value))
+			((DPTXlatorBoolean) xlator).setValue(true);
+		else
+			xlator.setValue(value);
+		return KNXConnector.createGroupAPDU(KNXConnector.GROUP_WRITE, xlator);
+	}
+
+	@Override
+	public String toString() {
+		return "DptCodec(" + _dpt + ")";
+	}
+
+}
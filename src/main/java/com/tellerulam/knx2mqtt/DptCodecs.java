@@ -0,0 +1,86 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import tuwien.auto.calimero.exception.KNXException;
+
+/**
+ * Registry of the shared {@link DptCodec}s by datapoint type ID.
+ */
+public class DptCodecs {
+
+	/**
+	 * Type used for group addresses whose datapoint type is not supported.
+	 */
+	public static final String FALLBACK_DPT = "5.005";
+
+	private static final Logger L = Logger.getLogger(DptCodecs.class.getName());
+
+	private static final ConcurrentMap<String, DptCodec> CODECS = new ConcurrentHashMap<>();
+
+	/**
+	 * Canonical instances of all datapoint type IDs seen.
+	 */
+	private static final ConcurrentMap<String, String> DPTS = new ConcurrentHashMap<>();
+
+	/**
+	 * The canonical instance of the given datapoint type ID.
+	 *
+	 * <p>
+	 * Large tables use a few dozen distinct types for thousands of group addresses, all loaded as
+	 * separate strings.
+	 * </p>
+	 */
+	public static String intern(String dpt) {
+		if (dpt == null) {
+			return null;
+		}
+		String result = DPTS.putIfAbsent(dpt, dpt);
+		return result == null ? dpt : result;
+	}
+
+	/**
+	 * The shared codec for the given datapoint type ID, or the codec for {@link #FALLBACK_DPT}, if
+	 * the type is not supported.
+	 *
+	 * @param name
+	 *        The group name for the warning about an unsupported type.
+	 */
+	public static DptCodec forDptOrFallback(String dpt, String name) {
+		try {
+			if (dpt != null) {
+				return forDpt(dpt);
+			}
+		} catch (KNXException e) {
+			// Fall back below.
+		}
+		L.warning("WARNING! Unable to create translator for DPT " + dpt + " of " + name
+				+ ", using 1-byte-value as a fallback.");
+		try {
+			return forDpt(FALLBACK_DPT);
+		} catch (KNXException e) {
+			throw new IllegalStateException("No translator for fallback DPT " + FALLBACK_DPT, e);
+		}
+	}
+
+	/**
+	 * The shared codec for the given datapoint type ID.
+	 *
+	 * @throws KNXException
+	 *         If the type is not supported.
+	 */
+	public static DptCodec forDpt(String dpt) throws KNXException {
+		DptCodec result = CODECS.get(dpt);
+		if (result == null) {
+			result = new DptCodec(dpt);
+			DptCodec clash = CODECS.putIfAbsent(dpt, result);
+			if (clash != null) {
+				result = clash;
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.tellerulam.knx2mqtt;
+
+import tuwien.auto.calimero.exception.KNXFormatException;
+
+/**
+ * Decoder of the ASDU of a group telegram into a primitive numeric value.
+ *
+ * <p>
+ * Decoders are stateless and can be shared between all group addresses with the same datapoint
+ * type. See {@link DptDecoders} for the available decoders.
+ * </p>
+ */
+public abstract class DptDecoder {
+
+	/**
+	 * How a decoded value is represented.
+	 */
+	public enum Kind {
+		/**
+		 * An integral number, see {@link DptDecoder#decodeLong(byte[])}.
+		 */
+		INTEGRAL,
+
+		/**
+		 * A number with single floating point precision.
+		 */
+		FLOAT,
+
+		/**
+		 * A number with double floating point precision.
+		 */
+		DOUBLE,
+
+		/**
+		 * A textual value that cannot be decoded into a number.
+		 */
+		TEXT;
+	}
+
+	private final Kind _kind;
+
+	private final int _size;
+
+	/**
+	 * Creates a {@link DptDecoder}.
+	 *
+	 * @param kind
+	 *        The representation of decoded values.
+	 * @param size
+	 *        The minimum number of bytes in an ASDU.
+	 */
+	protected DptDecoder(Kind kind, int size) {
+		_kind = kind;
+		_size = size;
+	}
+
+	/**
+	 * The representation of decoded values.
+	 */
+	public final Kind getKind() {
+		return _kind;
+	}
+
+	/**
+	 * Decodes an integral value.
+	 *
+	 * <p>
+	 * Only supported for decoders of {@link Kind#INTEGRAL} kind.
+	 * </p>
+	 */
+	public long decodeLong(byte[] asdu) throws KNXFormatException {
+		throw new UnsupportedOperationException("Not an integral type.");
+	}
+
+	/**
+	 * Decodes the value as floating point number. All integral values of KNX datapoint types are
+	 * exactly representable as double.
+	 */
+	public double decodeDouble(byte[] asdu) throws KNXFormatException {
+		return decodeLong(asdu);
+	}
+
+	/**
+	 * Makes sure that the ASDU is long enough for this decoder.
+	 */
+	protected final void checkSize(byte[] asdu) throws KNXFormatException {
+		if (asdu.length < _size) {
+			throw new KNXFormatException("ASDU length " + asdu.length + " too short, expected " + _size);
+		}
+	}
+
+	/**
+	 * Reads an unsigned 8 bit value.
+	 */
+	protected static int unsigned8(byte[] asdu, int offset) {
+		return asdu[offset] & 0xFF;
+	}
+
+	/**
+	 * Reads an unsigned big-endian 16 bit value.
+	 */
+	protected static int unsigned16(byte[] asdu, int offset) {
+		return (asdu[offset] & 0xFF) << 8 | (asdu[offset + 1] & 0xFF);
+	}
+
+	/**
+	 * Reads a signed big-endian 32 bit value.
+	 */
+	protected static int signed32(byte[] asdu, int offset) {
+		return (asdu[offset] & 0xFF) << 24 | (asdu[offset + 1] & 0xFF) << 16 | (asdu[offset + 2] & 0xFF) << 8
+				| (asdu[offset + 3] & 0xFF);
+	}
+
+}
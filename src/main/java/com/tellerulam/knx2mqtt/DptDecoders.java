@@ -0,0 +1,203 @@
+package com.tellerulam.knx2mqtt;
+
+import tuwien.auto.calimero.exception.KNXFormatException;
+
+/**
+ * Registry of {@link DptDecoder}s by datapoint type.
+ *
+ * <p>
+ * Decoders exist for the common numeric main types. All other types (e.g. date and time, strings
+ * or controlled values) must be translated with Calimero's <code>DPTXlator</code>.
+ * </p>
+ */
+public class DptDecoders {
+
+	/**
+	 * DPT 1.x, boolean as 0 or 1.
+	 */
+	static final DptDecoder BOOLEAN = new DptDecoder(DptDecoder.Kind.INTEGRAL, 1) {
+		@Override
+		public long decodeLong(byte[] asdu) throws KNXFormatException {
+			checkSize(asdu);
+			return asdu[0] & 0x01;
+		}
+	};
+
+	/**
+	 * DPT 5.x, 8 bit unsigned value.
+	 */
+	static final DptDecoder UNSIGNED_8 = new Scaled8BitDecoder(255);
+
+	/**
+	 * DPT 5.001, percentage scaled to 0..100.
+	 */
+	static final DptDecoder SCALING = new Scaled8BitDecoder(100);
+
+	/**
+	 * DPT 5.003, angle scaled to 0..360.
+	 */
+	static final DptDecoder ANGLE = new Scaled8BitDecoder(360);
+
+	/**
+	 * DPT 7.x, 16 bit unsigned value.
+	 */
+	static final DptDecoder UNSIGNED_16 = new Unsigned16BitDecoder(1);
+
+	/**
+	 * DPT 7.003, time period in 10 ms.
+	 */
+	static final DptDecoder TIME_PERIOD_10 = new Unsigned16BitDecoder(10);
+
+	/**
+	 * DPT 7.004, time period in 100 ms.
+	 */
+	static final DptDecoder TIME_PERIOD_100 = new Unsigned16BitDecoder(100);
+
+	/**
+	 * DPT 9.x, 16 bit KNX float.
+	 */
+	static final DptDecoder FLOAT_16 = new DptDecoder(DptDecoder.Kind.DOUBLE, 2) {
+		@Override
+		public double decodeDouble(byte[] asdu) throws KNXFormatException {
+			checkSize(asdu);
+			int data = unsigned16(asdu, 0);
+			int mantissa = data & 0x07FF;
+			if ((data & 0x8000) != 0) {
+				// Sign bit, the mantissa is in two's complement.
+				mantissa -= 0x0800;
+			}
+			int exponent = (data >> 11) & 0x0F;
+			return 0.01 * (mantissa << exponent);
+		}
+	};
+
+	/**
+	 * DPT 12.x, 32 bit unsigned value.
+	 */
+	static final DptDecoder UNSIGNED_32 = new DptDecoder(DptDecoder.Kind.INTEGRAL, 4) {
+		@Override
+		public long decodeLong(byte[] asdu) throws KNXFormatException {
+			checkSize(asdu);
+			return signed32(asdu, 0) & 0xFFFFFFFFL;
+		}
+	};
+
+	/**
+	 * DPT 13.x, 32 bit signed value.
+	 */
+	static final DptDecoder SIGNED_32 = new DptDecoder(DptDecoder.Kind.INTEGRAL, 4) {
+		@Override
+		public long decodeLong(byte[] asdu) throws KNXFormatException {
+			checkSize(asdu);
+			return signed32(asdu, 0);
+		}
+	};
+
+	/**
+	 * DPT 14.x, 32 bit IEEE float.
+	 */
+	static final DptDecoder FLOAT_32 = new DptDecoder(DptDecoder.Kind.FLOAT, 4) {
+		@Override
+		public double decodeDouble(byte[] asdu) throws KNXFormatException {
+			checkSize(asdu);
+			return Float.intBitsToFloat(signed32(asdu, 0));
+		}
+	};
+
+	/**
+	 * DPT 17.x, scene number.
+	 */
+	static final DptDecoder SCENE_NUMBER = new DptDecoder(DptDecoder.Kind.INTEGRAL, 1) {
+		@Override
+		public long decodeLong(byte[] asdu) throws KNXFormatException {
+			checkSize(asdu);
+			return asdu[0] & 0x3F;
+		}
+	};
+
+	private static final class Scaled8BitDecoder extends DptDecoder {
+		private final int _range;
+
+		Scaled8BitDecoder(int range) {
+			super(DptDecoder.Kind.INTEGRAL, 1);
+			_range = range;
+		}
+
+		@Override
+		public long decodeLong(byte[] asdu) throws KNXFormatException {
+			checkSize(asdu);
+			int value = unsigned8(asdu, 0);
+			return _range == 255 ? value : Math.round(value * _range / 255f);
+		}
+	}
+
+	private static final class Unsigned16BitDecoder extends DptDecoder {
+		private final int _factor;
+
+		Unsigned16BitDecoder(int factor) {
+			super(DptDecoder.Kind.INTEGRAL, 2);
+			_factor = factor;
+		}
+
+		@Override
+		public long decodeLong(byte[] asdu) throws KNXFormatException {
+			checkSize(asdu);
+			return unsigned16(asdu, 0) * _factor;
+		}
+	}
+
+	/**
+	 * Looks up the decoder for the given datapoint type ID, e.g. <code>9.001</code>.
+	 *
+	 * @return The decoder, or <code>null</code> if there is no specialized decoder for the given
+	 *         type.
+	 */
+	public static DptDecoder forDpt(String dpt) {
+		if (dpt == null) {
+			return null;
+		}
+		int sep = dpt.indexOf('.');
+		int mainType;
+		try {
+			mainType = Integer.parseInt(sep < 0 ? dpt : dpt.substring(0, sep));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		String subType = sep < 0 ? "" : dpt.substring(sep + 1);
+		switch (mainType) {
+		case 1:
+			return BOOLEAN;
+		case 5:
+			switch (subType) {
+			case "001":
+				return SCALING;
+			case "003":
+				return ANGLE;
+			default:
+				return UNSIGNED_8;
+			}
+		case 7:
+			switch (subType) {
+			case "003":
+				return TIME_PERIOD_10;
+			case "004":
+				return TIME_PERIOD_100;
+			default:
+				return UNSIGNED_16;
+			}
+		case 9:
+			return FLOAT_16;
+		case 12:
+			return UNSIGNED_32;
+		case 13:
+			return SIGNED_32;
+		case 14:
+			return FLOAT_32;
+		case 17:
+			return SCENE_NUMBER;
+		default:
+			return null;
+		}
+	}
+
+}
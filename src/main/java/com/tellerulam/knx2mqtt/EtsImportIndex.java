@@ -0,0 +1,194 @@
+package com.tellerulam.knx2mqtt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Content hashes of the entries of an ETS project file that a group address cache was built from,
+ * together with the com object information resolved from each device description.
+ *
+ * <p>
+ * The hash of an entry is taken from the ZIP directory (CRC-32 and size), so that checking a
+ * project file does not require reading its contents. A cache is up to date, if the hashes of all
+ * entries it was built from are unchanged, regardless of the file's modification time. After a
+ * change, the com object information of unchanged device descriptions is reused instead of parsing
+ * them again.
+ * </p>
+ */
+final class EtsImportIndex {
+
+	private static final int MAGIC = 0x4B324D49; // "K2MI"
+
+	private static final int VERSION = 1;
+
+	/**
+	 * The DPT relevant properties of a <code>ComObjectRef</code>, completed from the referenced
+	 * <code>ComObject</code>.
+	 */
+	static final class ComObjectInfo {
+		final String dpt;
+
+		final String objectSize;
+
+		ComObjectInfo(String dpt, String objectSize) {
+			this.dpt = dpt;
+			this.objectSize = objectSize;
+		}
+	}
+
+	private static final class Device {
+		final String hash;
+
+		final Map<String, ComObjectInfo> comObjects = new HashMap<>();
+
+		Device(String hash) {
+			this.hash = hash;
+		}
+	}
+
+	private String _projectEntry;
+
+	private String _projectHash;
+
+	private final Map<String, Device> _devices = new HashMap<>();
+
+	/**
+	 * Creates an empty {@link EtsImportIndex}.
+	 */
+	EtsImportIndex() {
+		super();
+	}
+
+	/**
+	 * The content hash of the given ZIP entry.
+	 */
+	static String hash(ZipEntry entry) {
+		return Long.toHexString(entry.getCrc()) + ":" + entry.getSize();
+	}
+
+	/**
+	 * Records the project entry (<code>0.xml</code>) the group addresses are resolved from.
+	 */
+	void setProject(ZipEntry projectEntry) {
+		_projectEntry = projectEntry.getName();
+		_projectHash = hash(projectEntry);
+	}
+
+	/**
+	 * Whether the project entry is unchanged.
+	 */
+	boolean isProjectUnchanged(ZipEntry projectEntry) {
+		return projectEntry.getName().equals(_projectEntry) && hash(projectEntry).equals(_projectHash);
+	}
+
+	/**
+	 * Whether all entries of the given project file the index was built from are unchanged.
+	 */
+	boolean isUpToDate(ZipFile zip) {
+		if (_projectEntry == null) {
+			return false;
+		}
+		ZipEntry projectEntry = zip.getEntry(_projectEntry);
+		if (projectEntry == null || !isProjectUnchanged(projectEntry)) {
+			return false;
+		}
+		for (Entry<String, Device> device : _devices.entrySet()) {
+			ZipEntry entry = zip.getEntry(device.getKey());
+			if (entry == null || !hash(entry).equals(device.getValue().hash)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The recorded information about the given com object, or <code>null</code>, if the device
+	 * description has changed or the com object was not recorded.
+	 */
+	ComObjectInfo lookup(String devicePath, String deviceHash, String comObjectRefId) {
+		Device device = _devices.get(devicePath);
+		if (device == null || !device.hash.equals(deviceHash)) {
+			return null;
+		}
+		return device.comObjects.get(comObjectRefId);
+	}
+
+	/**
+	 * Records information about a com object of the given device description.
+	 */
+	void put(String devicePath, String deviceHash, String comObjectRefId, ComObjectInfo info) {
+		Device device = _devices.get(devicePath);
+		if (device == null || !device.hash.equals(deviceHash)) {
+			device = new Device(deviceHash);
+			_devices.put(devicePath, device);
+		}
+		device.comObjects.put(comObjectRefId, info);
+	}
+
+	/**
+	 * Reads an index from the given file.
+	 */
+	static EtsImportIndex read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Unknown format of ETS import index " + file);
+			}
+			EtsImportIndex result = new EtsImportIndex();
+			result._projectEntry = in.readUTF();
+			result._projectHash = in.readUTF();
+			for (int n = in.readInt(); n > 0; n--) {
+				String path = in.readUTF();
+				Device device = new Device(in.readUTF());
+				for (int k = in.readInt(); k > 0; k--) {
+					device.comObjects.put(in.readUTF(), new ComObjectInfo(readOptional(in), readOptional(in)));
+				}
+				result._devices.put(path, device);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Writes this index to the given file.
+	 */
+	void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(_projectEntry);
+			out.writeUTF(_projectHash);
+			out.writeInt(_devices.size());
+			for (Entry<String, Device> device : _devices.entrySet()) {
+				out.writeUTF(device.getKey());
+				out.writeUTF(device.getValue().hash);
+				out.writeInt(device.getValue().comObjects.size());
+				for (Entry<String, ComObjectInfo> comObject : device.getValue().comObjects.entrySet()) {
+					out.writeUTF(comObject.getKey());
+					writeOptional(out, comObject.getValue().dpt);
+					writeOptional(out, comObject.getValue().objectSize);
+				}
+			}
+		}
+	}
+
+	private static String readOptional(DataInputStream in) throws IOException {
+		String value = in.readUTF();
+		return value.isEmpty() ? null : value;
+	}
+
+	private static void writeOptional(DataOutputStream out, String value) throws IOException {
+		out.writeUTF(value == null ? "" : value);
+	}
+
+}
@@ -2,11 +2,18 @@ package com.tellerulam.knx2mqtt;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -14,19 +21,20 @@ import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.tellerulam.knx2mqtt.EtsImportIndex.ComObjectInfo;
+
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.exception.KNXException;
 
@@ -37,22 +45,38 @@ public class EtsLoader {
 
 	static final Logger L = Logger.getLogger(EtsLoader.class.getName());
 
+	private static final Pattern DPST_PATTERN = Pattern.compile("DPS?T-([0-9]+)(-([0-9]+))?");
+
 	private final GroupAddressManager _addressManager;
 
-	private Map<String, Map<String, Map<String, String>>> _deviceDescriptionCache;
+	private final Map<String, Map<String, Map<String, String>>> _deviceDescriptionCache = new ConcurrentHashMap<>();
 
 	private Map<Integer, String> _dptMap;
 
 	private SAXParserFactory _saxFactory;
 
+	private final File _projectFile;
+
 	private ZipFile _zip;
 
+	/**
+	 * Index of a previous import, or <code>null</code>.
+	 */
+	private final EtsImportIndex _previousIndex;
+
+	/**
+	 * Index of this import.
+	 */
+	private final EtsImportIndex _index = new EtsImportIndex();
+
 	/**
 	 * Creates a {@link EtsLoader}.
 	 */
-	private EtsLoader(GroupAddressManager addressManager, ZipFile zip) {
+	private EtsLoader(GroupAddressManager addressManager, File projectFile, ZipFile zip, EtsImportIndex previousIndex) {
 		_addressManager = addressManager;
+		_projectFile = projectFile;
 		_zip = zip;
+		_previousIndex = previousIndex;
 	}
 
 	/**
@@ -63,11 +87,17 @@ public class EtsLoader {
 		if (!projectFile.exists()) {
 			throw new IllegalArgumentException("ETS project file " + fileName + " does not exist.");
 		}
-		File cacheFile = new File(fileName + ".json");
+		boolean binary = !"json".equals(System.getProperty(PropertyNames.KNX2MQTT_KNX_CACHEFORMAT, "binary"));
+		File cacheFile = new File(fileName + (binary ? ".bin" : ".json"));
+		File indexFile = new File(cacheFile.getPath() + ".index");
+		EtsImportIndex previousIndex = readIndex(indexFile);
 		if (cacheFile.exists()) {
-			if (cacheFile.lastModified() > projectFile.lastModified()) {
+			if (isUpToDate(cacheFile, projectFile, previousIndex)) {
 				try {
-					addressManager.readFromFile(cacheFile);
+					if (binary)
+						addressManager.readFromBinaryFile(cacheFile);
+					else
+						addressManager.readFromFile(cacheFile);
 
 					L.fine("Read group address table from " + cacheFile + ".");
 					return;
@@ -75,33 +105,73 @@ public class EtsLoader {
 					L.log(Level.WARNING, "Error reading cache file " + cacheFile + ", ignoring it", e);
 				}
 			} else {
-				L.fine("Cache file " + cacheFile + " exists, but ETS project file is newer, ignoring it");
+				L.fine("Cache file " + cacheFile + " exists, but ETS project file has changed, ignoring it");
 			}
 		}
 
-		analyzeProjectFile(addressManager, projectFile);
+		EtsImportIndex index = analyzeProjectFile(addressManager, projectFile, previousIndex);
 
 		try {
-			addressManager.storeToFile(cacheFile);
+			if (binary)
+				addressManager.storeToBinaryFile(cacheFile);
+			else
+				addressManager.storeToFile(cacheFile);
 		} catch (Exception e) {
 			L.log(Level.WARNING, "Unable to write group address cache file " + cacheFile
 					+ ". This does not impair functionality, but subsequent startups will not be faster", e);
+			return;
+		}
+		try {
+			index.write(indexFile);
+		} catch (IOException e) {
+			L.log(Level.WARNING, "Unable to write ETS import index " + indexFile, e);
+			indexFile.delete();
+		}
+	}
+
+	private static EtsImportIndex readIndex(File indexFile) {
+		if (!indexFile.exists()) {
+			return null;
+		}
+		try {
+			return EtsImportIndex.read(indexFile);
+		} catch (IOException e) {
+			L.log(Level.WARNING, "Error reading ETS import index " + indexFile + ", ignoring it", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Whether the given cache file reflects the current contents of the project file.
+	 */
+	private static boolean isUpToDate(File cacheFile, File projectFile, EtsImportIndex index) {
+		if (index == null) {
+			// Cache without content hashes, fall back to comparing modification times.
+			return cacheFile.lastModified() > projectFile.lastModified();
+		}
+		try (ZipFile zip = new ZipFile(projectFile)) {
+			return index.isUpToDate(zip);
+		} catch (IOException e) {
+			L.log(Level.WARNING, "Unable to check ETS project file " + projectFile, e);
+			return false;
 		}
 	}
 
 	/**
 	 * Loads the group address information from the given ETS project file.
 	 */
-	private static void analyzeProjectFile(GroupAddressManager addressManager, File projectFile) {
+	private static EtsImportIndex analyzeProjectFile(GroupAddressManager addressManager, File projectFile,
+			EtsImportIndex previousIndex) {
 		long startTime = System.currentTimeMillis();
 		try (ZipFile zip = new ZipFile(projectFile)) {
-			EtsLoader loader = new EtsLoader(addressManager, zip);
+			EtsLoader loader = new EtsLoader(addressManager, projectFile, zip, previousIndex);
 
 			ZipEntry projectEntry = loader.locateProjectEntry();
 			loader.analyzeProjectEntry(projectEntry);
 
 			long totalTime = System.currentTimeMillis() - startTime;
 			L.fine("Reading group address table took " + totalTime + "ms");
+			return loader._index;
 		} catch (Exception e) {
 			throw new RuntimeException("Error reading ETS project file '" + projectFile + "'.", e);
 		}
@@ -129,99 +199,210 @@ public class EtsLoader {
 		throw new IllegalArgumentException("Unable to locate entry '0.xml' in ETS project file.");
 	}
 
+	/**
+	 * A <code>GroupAddress</code> element of the project file.
+	 */
+	private static final class GroupAddressEntry {
+		final String id;
+
+		final String address;
+
+		final String name;
+
+		final String dpt;
+
+		GroupAddressEntry(String id, String address, String name, String dpt) {
+			this.id = id;
+			this.address = address;
+			this.name = name;
+			this.dpt = dpt;
+		}
+	}
+
+	/**
+	 * A <code>Send</code> or <code>Receive</code> connection of a
+	 * <code>ComObjectInstanceRef</code> to a group address.
+	 */
+	private static final class Connection {
+		final String groupAddressRefId;
+
+		final String comObjectRefId;
+
+		final String dpt;
+
+		final boolean send;
+
+		Connection(String groupAddressRefId, String comObjectRefId, String dpt, boolean send) {
+			this.groupAddressRefId = groupAddressRefId;
+			this.comObjectRefId = comObjectRefId;
+			this.dpt = dpt;
+			this.send = send;
+		}
+	}
+
+	private final List<GroupAddressEntry> _groupAddresses = new ArrayList<>();
+
+	/**
+	 * Connections by the ID of the connected group address, in document order.
+	 */
+	private final Map<String, List<Connection>> _connectionsByGroupAddress = new HashMap<>();
+
 	/**
 	 * Find the GroupAddresses and their IDs in the ETS project file <code>0.xml</code>.
 	 */
 	private void analyzeProjectEntry(ZipEntry projectEntry)
-			throws ParserConfigurationException, SAXException, IOException, KNXException {
-		DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-		docBuilderFactory.setCoalescing(true);
-		DocumentBuilder docBuilder = docBuilderFactory.newDocumentBuilder();
-		Document doc = docBuilder.parse(_zip.getInputStream(projectEntry));
-		NodeList sendConnections = doc.getElementsByTagName("Send");
-		NodeList receiveConnections = doc.getElementsByTagName("Receive");
-
-		// For all elements //GroupAddress, build their qualified group names and read out @Address
-		// and @DatapointType if available.
-		NodeList groupAddressElements = doc.getElementsByTagName("GroupAddress");
-		for (int n = 0; n < groupAddressElements.getLength(); n++) {
-			Element groupAddressElement = (Element) groupAddressElements.item(n);
-
-			String name = buildQualifiedGroupName(groupAddressElement);
-			String address = groupAddressElement.getAttribute("Address");
-
-			String dpt = nonEmpty(groupAddressElement.getAttribute("DatapointType"));
+			throws XMLStreamException, SAXException, IOException, ParserConfigurationException, KNXException {
+		_index.setProject(projectEntry);
+		if (_previousIndex != null && _previousIndex.isProjectUnchanged(projectEntry)) {
+			L.fine("ETS project entry is unchanged, only device descriptions have changed");
+		}
+		try (InputStream in = _zip.getInputStream(projectEntry)) {
+			readProjectEntry(in);
+		}
+
+		int threads = Integer.getInteger(PropertyNames.KNX2MQTT_KNX_IMPORTTHREADS,
+				Runtime.getRuntime().availableProcessors()).intValue();
+		if (threads > 1) {
+			parseDeviceDescriptions(threads);
+		}
+
+		// For all GroupAddress elements, read out @DatapointType if available.
+		for (GroupAddressEntry entry : _groupAddresses) {
+			String dpt = entry.dpt;
 			if (dpt == null) {
 				// We're not lucky. Look into connections of this group address.
-				String id = groupAddressElement.getAttribute("Id");
-				dpt = dptFromGroupAddressConnections(sendConnections, receiveConnections, id, address, name);
+				dpt = dptFromGroupAddressConnections(entry.id, entry.address, entry.name);
 			}
 
 			if (dpt != null) {
-				storeGAInfo(address, name, dpt);
+				storeGAInfo(entry.address, entry.name, dpt);
 			}
 		}
 	}
 
 	/**
-	 * Resolve the full "path" name of the group by going upwards in the GroupRanges
+	 * Collects group addresses with their qualified names and the connections of all
+	 * <code>ComObjectInstanceRef</code>s in a single streaming pass over <code>0.xml</code>.
 	 */
-	private String buildQualifiedGroupName(Element groupAddressElement) {
-		String groupName = null;
-		Element ancestorOrSelf = groupAddressElement;
-		while (true) {
-			String localName = ancestorOrSelf.getAttribute("Name").replace('/', '_').replace(' ', '_');
-			if (groupName == null) {
-				groupName = localName;
-			} else {
-				groupName = localName + "/" + groupName;
+	private void readProjectEntry(InputStream in) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		XMLStreamReader reader = factory.createXMLStreamReader(in);
+		try {
+			// Names of the open elements, and the names of the open GroupRanges (null for other
+			// elements).
+			List<String> elements = new ArrayList<>();
+			List<String> rangeNames = new ArrayList<>();
+
+			String comObjectRefId = null;
+			String comObjectDpt = null;
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT: {
+					String element = reader.getLocalName();
+					String rangeName = null;
+					switch (element) {
+					case "GroupRange":
+						rangeName = groupNamePart(reader.getAttributeValue(null, "Name"));
+						break;
+					case "GroupAddress":
+						_groupAddresses.add(new GroupAddressEntry(reader.getAttributeValue(null, "Id"),
+								reader.getAttributeValue(null, "Address"),
+								buildQualifiedGroupName(rangeNames, reader.getAttributeValue(null, "Name")),
+								nonEmpty(reader.getAttributeValue(null, "DatapointType"))));
+						break;
+					case "ComObjectInstanceRef":
+						comObjectRefId = reader.getAttributeValue(null, "RefId");
+						comObjectDpt = nonEmpty(reader.getAttributeValue(null, "DatapointType"));
+						break;
+					case "Send":
+					case "Receive":
+						String owner = elements.size() < 2 ? null : elements.get(elements.size() - 2);
+						if (!"ComObjectInstanceRef".equals(owner)) {
+							L.warning("Weird ETS project file structure. Connection not owned by a ComObjectInstanceRef, but "
+									+ owner + ".");
+							break;
+						}
+						addConnection(new Connection(reader.getAttributeValue(null, "GroupAddressRefId"), comObjectRefId,
+								comObjectDpt, "Send".equals(element)));
+						break;
+					}
+					elements.add(element);
+					rangeNames.add(rangeName);
+					break;
+				}
+				case XMLStreamConstants.END_ELEMENT: {
+					elements.remove(elements.size() - 1);
+					rangeNames.remove(rangeNames.size() - 1);
+					break;
+				}
+				}
 			}
+		} finally {
+			reader.close();
+		}
+	}
 
-			ancestorOrSelf = (Element) ancestorOrSelf.getParentNode();
-			if (!"GroupRange".equals(ancestorOrSelf.getNodeName())) {
+	private void addConnection(Connection connection) {
+		List<Connection> connections = _connectionsByGroupAddress.get(connection.groupAddressRefId);
+		if (connections == null) {
+			connections = new ArrayList<>(2);
+			_connectionsByGroupAddress.put(connection.groupAddressRefId, connections);
+		}
+		connections.add(connection);
+	}
+
+	/**
+	 * Resolve the full "path" name of the group by going upwards in the GroupRanges
+	 */
+	private static String buildQualifiedGroupName(List<String> rangeNames, String name) {
+		String groupName = groupNamePart(name);
+		for (int n = rangeNames.size() - 1; n >= 0; n--) {
+			String rangeName = rangeNames.get(n);
+			if (rangeName == null) {
 				break;
 			}
+			groupName = rangeName + "/" + groupName;
 		}
 		return groupName;
 	}
 
+	private static String groupNamePart(String name) {
+		return name == null ? "" : name.replace('/', '_').replace(' ', '_');
+	}
+
 	/**
 	 * Find out what is connected to this group address
 	 */
-	private String dptFromGroupAddressConnections(NodeList sendConnections, NodeList receiveConnections,
-			String groupAddressRefId, String address, String name)
+	private String dptFromGroupAddressConnections(String groupAddressRefId, String address, String name)
 			throws SAXException, IOException, ParserConfigurationException {
 		
-		List<Element> comObjectInstanceRefs = locateComObjectInstanceRefs(sendConnections, receiveConnections,
-				groupAddressRefId);
+		List<Connection> connections = locateConnections(groupAddressRefId);
 		
-		if (comObjectInstanceRefs.size() == 0) {
+		if (connections.size() == 0) {
 			L.info("Group address '" + name + "' (" + formatGroupAddress(address)
 					+ ") does not seem to be connected at all, ignoring it");
 			return null;
 		}
 
-		for (Element comObjectInstanceRef : comObjectInstanceRefs) {
-			String dpt = comObjectInstanceRef.getAttribute("DatapointType");
-			if (dpt.length() != 0) {
+		for (Connection connection : connections) {
+			if (connection.dpt != null) {
 				// We're lucky and someone specified the dpt at the CombObjectInstanceRef.
-				return dpt;
+				return connection.dpt;
 			}
 		}
 
 		// No luck, dig deeper.
-		for (Element comObjectInstanceRef : comObjectInstanceRefs) {
-			String refId = comObjectInstanceRef.getAttribute("RefId");
-			String dpt = dptFromConnectedComObject(refId, address, name, false);
+		for (Connection connection : connections) {
+			String dpt = dptFromConnectedComObject(connection.comObjectRefId, address, name, false);
 			if (dpt != null) {
 				return dpt;
 			}
 		}
 
 		// No luck at all, infer datapoint type from data size.
-		for (Element comObjectInstanceRef : comObjectInstanceRefs) {
-			String refId = comObjectInstanceRef.getAttribute("RefId");
-			String dpt = dptFromConnectedComObject(refId, address, name, true);
+		for (Connection connection : connections) {
+			String dpt = dptFromConnectedComObject(connection.comObjectRefId, address, name, true);
 			if (dpt != null) {
 				return dpt;
 			}
@@ -231,67 +412,33 @@ public class EtsLoader {
 		return null;
 	}
 
-	private List<Element> locateComObjectInstanceRefs(NodeList sendConnections, NodeList receiveConnections,
-			String groupAddressRefId) {
-		ArrayList<Element> result = new ArrayList<>();
-		addComObjectInstanceRefs(result, sendConnections, groupAddressRefId);
-		addComObjectInstanceRefs(result, receiveConnections, groupAddressRefId);
+	/**
+	 * The connections of the given group address, send connections first.
+	 */
+	private List<Connection> locateConnections(String groupAddressRefId) {
+		List<Connection> connections = _connectionsByGroupAddress.get(groupAddressRefId);
+		if (connections == null) {
+			return Collections.emptyList();
+		}
+		ArrayList<Connection> result = new ArrayList<>(connections.size());
+		addConnections(result, connections, true);
+		addConnections(result, connections, false);
 		return result;
 	}
 
-	private void addComObjectInstanceRefs(ArrayList<Element> result, NodeList connections, String groupAddressRefId) {
-		for (int n = 0; n < connections.getLength(); n++) {
-			Element connection = (Element) connections.item(n);
-			if (!groupAddressRefId.equals(connection.getAttribute("GroupAddressRefId"))) {
-				continue;
-			}
-
-			Element comObjectInstanceRef = (Element) connection.getParentNode().getParentNode();
-			if (!"ComObjectInstanceRef".equals(comObjectInstanceRef.getNodeName())) {
-				L.warning("Weird ETS project file structure. Connection not owned by a ComObjectInstanceRef, but "
-						+ comObjectInstanceRef.getNodeName() + ".");
-				continue;
+	private static void addConnections(ArrayList<Connection> result, List<Connection> connections, boolean send) {
+		for (Connection connection : connections) {
+			if (connection.send == send) {
+				result.add(connection);
 			}
-
-			result.add(comObjectInstanceRef);
 		}
 	}
 
 	private String dptFromConnectedComObject(String comObjectRefId, String address, String name, boolean useObjectSize)
 			throws SAXException, IOException, ParserConfigurationException {
-		// We need to look into the device description that defines the com object. Determine the
-		// device's filename from the reference ID (e.g. M-0083_A-0014-11-EA36_O-56_R-10112).
-		String refIdParts[] = comObjectRefId.split("_");
-
-		// Determine path, e.g. M-0083/M-0083_A-0014-11-EA36.xml
-		String devicePath = refIdParts[0] + "/" + refIdParts[0] + "_" + refIdParts[1] + ".xml";
-		Map<String, Map<String, String>> dev = lookupDeviceDescription(devicePath);
-
-		Map<String, String> comObjRefProperties = dev.get(comObjectRefId);
-		if (comObjRefProperties == null) {
-			throw new IllegalArgumentException(
-					"Unable to find ComObjectRef with Id " + comObjectRefId + " in " + devicePath);
-		}
-
-		// Perhaps the ComObjectRef
-		String dpt = dptFromComObject(comObjRefProperties, address, name, useObjectSize);
-		if (dpt != null) {
-			return dpt;
-		}
-
-		String comObjectId = comObjRefProperties.get("RefId");
-		Map<String, String> comObjectProperties = dev.get(comObjectId);
-		if (comObjectProperties == null) {
-			throw new IllegalArgumentException("Unable to find ComObject with Id " + comObjectId + " in " + devicePath);
-		}
-
-		return dptFromComObject(comObjectProperties, address, name, useObjectSize);
-	}
-
-	private String dptFromComObject(Map<String, String> comObjProperties, String address, String name,
-			boolean useObjectSize) throws SAXException, IOException, ParserConfigurationException {
+		ComObjectInfo info = comObjectInfo(comObjectRefId);
 		if (useObjectSize) {
-			String objectSize = nonEmpty(comObjProperties.get("ObjectSize"));
+			String objectSize = info.objectSize;
 			if (objectSize == null) {
 				return null;
 			} else {
@@ -305,22 +452,83 @@ public class EtsLoader {
 				return dpt;
 			}
 		} else {
-			String dpt = nonEmpty(comObjProperties.get("DatapointType"));
-			return dpt;
+			return info.dpt;
+		}
+	}
+
+	/**
+	 * The DPT relevant properties of the given com object, reused from the previous import, if its
+	 * device description has not changed.
+	 */
+	private ComObjectInfo comObjectInfo(String comObjectRefId)
+			throws SAXException, IOException, ParserConfigurationException {
+		String devicePath = devicePath(comObjectRefId);
+		String deviceHash = deviceHash(devicePath);
+		ComObjectInfo info = _index.lookup(devicePath, deviceHash, comObjectRefId);
+		if (info == null && _previousIndex != null) {
+			info = _previousIndex.lookup(devicePath, deviceHash, comObjectRefId);
 		}
+		if (info == null) {
+			info = parseComObjectInfo(devicePath, comObjectRefId);
+		}
+		_index.put(devicePath, deviceHash, comObjectRefId, info);
+		return info;
+	}
+
+	private ComObjectInfo parseComObjectInfo(String devicePath, String comObjectRefId)
+			throws SAXException, IOException, ParserConfigurationException {
+		// We need to look into the device description that defines the com object.
+		Map<String, Map<String, String>> dev = lookupDeviceDescription(devicePath);
+
+		Map<String, String> comObjRefProperties = dev.get(comObjectRefId);
+		if (comObjRefProperties == null) {
+			throw new IllegalArgumentException(
+					"Unable to find ComObjectRef with Id " + comObjectRefId + " in " + devicePath);
+		}
+
+		// Perhaps the ComObjectRef
+		String dpt = nonEmpty(comObjRefProperties.get("DatapointType"));
+		String objectSize = nonEmpty(comObjRefProperties.get("ObjectSize"));
+		if (dpt == null || objectSize == null) {
+			String comObjectId = comObjRefProperties.get("RefId");
+			Map<String, String> comObjectProperties = dev.get(comObjectId);
+			if (comObjectProperties != null) {
+				if (dpt == null)
+					dpt = nonEmpty(comObjectProperties.get("DatapointType"));
+				if (objectSize == null)
+					objectSize = nonEmpty(comObjectProperties.get("ObjectSize"));
+			} else if (dpt == null) {
+				throw new IllegalArgumentException(
+						"Unable to find ComObject with Id " + comObjectId + " in " + devicePath);
+			}
+		}
+		return new ComObjectInfo(dpt, objectSize);
+	}
+
+	private String deviceHash(String devicePath) {
+		ZipEntry entry = _zip.getEntry(devicePath);
+		return entry == null ? "" : EtsImportIndex.hash(entry);
+	}
+
+	/**
+	 * Determine the device's filename from the reference ID of a com object (e.g.
+	 * M-0083_A-0014-11-EA36_O-56_R-10112), e.g. M-0083/M-0083_A-0014-11-EA36.xml
+	 */
+	private static String devicePath(String comObjectRefId) {
+		String refIdParts[] = comObjectRefId.split("_");
+		return refIdParts[0] + "/" + refIdParts[0] + "_" + refIdParts[1] + ".xml";
 	}
 
 	private void storeGAInfo(String address, String name, String datapointType) throws KNXException {
-		String ga = formatGroupAddress(address);
+		int rawAddress = Integer.parseInt(address);
 	
-		GroupAddressInfo gai = _addressManager.getGAInfoForAddress(ga);
+		GroupAddressInfo gai = _addressManager.getGAInfoForAddress(rawAddress);
 		if (gai == null) {
-			gai = new GroupAddressInfo(name, ga);
+			gai = new GroupAddressInfo(name, rawAddress);
 			_addressManager.add(gai);
 		}
 	
-		Pattern p = Pattern.compile("DPS?T-([0-9]+)(-([0-9]+))?");
-		Matcher m = p.matcher(datapointType);
+		Matcher m = DPST_PATTERN.matcher(datapointType);
 		if (!m.find())
 			throw new IllegalArgumentException("Unparsable DPST '" + datapointType + "'");
 		StringBuilder dptBuilder = new StringBuilder();
@@ -336,7 +544,6 @@ public class EtsLoader {
 			dptBuilder.append(suffix);
 		}
 		gai.setDpt(dptBuilder.toString());
-		gai.createTranslator();
 	}
 
 	private String inferDPTFromObjectSize(String objSize)
@@ -391,18 +598,101 @@ public class EtsLoader {
 		return dptMap;
 	}
 
+	/**
+	 * Parses all device descriptions required for resolving DPTs in advance, distributed over the
+	 * given number of threads.
+	 */
+	private void parseDeviceDescriptions(int threads) {
+		List<String> filenames = new ArrayList<>(requiredDeviceDescriptions());
+		if (filenames.size() < 2) {
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+
+		// Each task reads its share of the descriptions through its own ZipFile and parser.
+		int taskCount = Math.min(filenames.size(), threads * 4);
+		List<ForkJoinTask<?>> tasks = new ArrayList<>(taskCount);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (int n = 0; n < taskCount; n++) {
+				final List<String> share = filenames.subList(n * filenames.size() / taskCount,
+						(n + 1) * filenames.size() / taskCount);
+				tasks.add(pool.submit(new Runnable() {
+					@Override
+					public void run() {
+						parseDeviceDescriptions(share);
+					}
+				}));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		L.fine("Parsing " + filenames.size() + " device descriptions with " + threads + " threads took "
+				+ (System.currentTimeMillis() - startTime) + "ms");
+	}
+
+	private void parseDeviceDescriptions(List<String> filenames) {
+		try (ZipFile zip = new ZipFile(_projectFile)) {
+			SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+			for (String filename : filenames) {
+				try {
+					_deviceDescriptionCache.put(filename, parseDeviceDescription(zip, parser, filename));
+				} catch (Exception e) {
+					// Reported when the description is actually needed.
+					L.log(Level.FINE, "Unable to parse device description " + filename + " in advance", e);
+				} finally {
+					parser.reset();
+				}
+			}
+		} catch (Exception e) {
+			L.log(Level.WARNING, "Unable to parse device descriptions in advance", e);
+		}
+	}
+
+	/**
+	 * Paths of the device descriptions required for resolving the DPTs of all group addresses.
+	 */
+	private Set<String> requiredDeviceDescriptions() {
+		Set<String> result = new HashSet<>();
+		for (GroupAddressEntry entry : _groupAddresses) {
+			if (entry.dpt != null) {
+				continue;
+			}
+			List<Connection> connections = locateConnections(entry.id);
+			if (hasConnectionDpt(connections)) {
+				continue;
+			}
+			for (Connection connection : connections) {
+				String devicePath = devicePath(connection.comObjectRefId);
+				if (_previousIndex == null || _previousIndex.lookup(devicePath, deviceHash(devicePath),
+						connection.comObjectRefId) == null) {
+					result.add(devicePath);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean hasConnectionDpt(List<Connection> connections) {
+		for (Connection connection : connections) {
+			if (connection.dpt != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private Map<String, Map<String, String>> lookupDeviceDescription(String filename)
 			throws ParserConfigurationException, SAXException, IOException {
-		if (_deviceDescriptionCache == null) {
-			_deviceDescriptionCache = new HashMap<>();
-		} else {
-			Map<String, Map<String, String>> cacheEntry = _deviceDescriptionCache.get(filename);
-			if (cacheEntry != null) {
-				return cacheEntry;
-			}
+		Map<String, Map<String, String>> cacheEntry = _deviceDescriptionCache.get(filename);
+		if (cacheEntry != null) {
+			return cacheEntry;
 		}
 
-		Map<String, Map<String, String>> attrById = parseDeviceDescription(filename);
+		Map<String, Map<String, String>> attrById = parseDeviceDescription(_zip, newParser(), filename);
 
 		_deviceDescriptionCache.put(filename, attrById);
 		return attrById;
@@ -412,9 +702,9 @@ public class EtsLoader {
 	 * Parses a device definition entry and delivers a mapping of all defined <code>ComObject</code>
 	 * and <code>ComObjectRef</code> element IDs to their attribute values.
 	 */
-	private Map<String, Map<String, String>> parseDeviceDescription(String filename)
-			throws SAXException, IOException, ParserConfigurationException {
-		ZipEntry deviceEntry = _zip.getEntry(filename);
+	private static Map<String, Map<String, String>> parseDeviceDescription(ZipFile zip, SAXParser parser,
+			String filename) throws SAXException, IOException {
+		ZipEntry deviceEntry = zip.getEntry(filename);
 		if (deviceEntry == null) {
 			throw new IllegalArgumentException("Unable to find device description " + filename);
 		}
@@ -433,7 +723,9 @@ public class EtsLoader {
 				}
 			}
 		};
-		newParser().parse(_zip.getInputStream(deviceEntry), deviceHandler);
+		try (InputStream in = zip.getInputStream(deviceEntry)) {
+			parser.parse(in, deviceHandler);
+		}
 		return attrById;
 	}
 
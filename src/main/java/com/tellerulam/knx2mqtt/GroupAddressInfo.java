@@ -1,38 +1,89 @@
 package com.tellerulam.knx2mqtt;
 
 import java.io.Serializable;
-import java.util.logging.Logger;
 
-import tuwien.auto.calimero.dptxlator.DPTXlator;
-import tuwien.auto.calimero.dptxlator.DPTXlatorBoolean;
-import tuwien.auto.calimero.dptxlator.TranslatorTypes;
-import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.exception.KNXFormatException;
 
 public class GroupAddressInfo implements Serializable {
-	private static final Logger L = Logger.getLogger(GroupAddressManager.class.getName());
-
 	private static final long serialVersionUID = 1;
 
 	private final String name;
 
 	private final String address;
 
+	private final int rawAddress;
+
 	private String dpt;
 
 	/*
-	 * We do not want this serialized, but recreate it explicitely on loading
+	 * We do not want this serialized, but resolve it on first use, see getCodec(). The codec is
+	 * shared with all other group addresses of the same DPT.
 	 */
-	transient DPTXlator xlator;
+	private transient DptCodec codec;
 
 	/*
-	 * Transient state, also not serialized
+	 * Transient state, also not serialized. The last value is either a number or a text, depending
+	 * on its kind. Updates from the bus are serialized by synchronizing on this object, since
+	 * several KNX links may deliver telegrams concurrently. The kind is volatile, since it is also
+	 * checked by the warm-up thread.
 	 */
-	transient Object lastValue;
+	transient volatile DptDecoder.Kind lastKind;
+
+	transient double lastNumber;
+
+	transient String lastText;
 
 	transient long lastValueTimestamp;
 
+	/*
+	 * The last status update received from the bus, answers get requests, see KNXLinks
+	 */
+	transient volatile StatusPublisher.Event lastEvent;
+
+	/*
+	 * Pre-rendered parts of the status message, created on first publish while synchronized on this
+	 */
+	transient StatusEncoder.Template statusTemplate;
+
+	/*
+	 * Decides which updates are published, created on first publish while synchronized on this,
+	 * volatile since get requests are answered from the MQTT thread
+	 */
+	transient volatile PublishFilter publishFilter;
+
+	/*
+	 * APDU of a group write waiting to be sent, see KNXSendScheduler
+	 */
+	transient volatile byte[] pendingWrite;
+
+	/*
+	 * System.nanoTime() when the pending write was submitted, see KNXSendScheduler
+	 */
+	transient volatile long pendingWriteSince;
+
+	/*
+	 * 1, if a group read is waiting to be sent, 2 if it was sent and waits for the response, see
+	 * KNXSendScheduler
+	 */
+	transient volatile int pendingRead;
+
+	/*
+	 * System.nanoTime() when the last group read was sent, see KNXSendScheduler
+	 */
+	transient volatile long readSentAt;
+
 	public GroupAddressInfo(String name, String address) {
+		this(name, GroupAddressManager.parseAddress(address), address);
+	}
+
+	public GroupAddressInfo(String name, int rawAddress) {
+		this(name, rawAddress, new GroupAddress(rawAddress).toString());
+	}
+
+	private GroupAddressInfo(String name, int rawAddress, String address) {
 		this.name = name;
+		this.rawAddress = rawAddress;
 		this.address = address;
 	}
 
@@ -44,12 +95,20 @@ public class GroupAddressInfo implements Serializable {
 		return address;
 	}
 
+	/**
+	 * The 16-bit group address.
+	 */
+	public int getRawAddress() {
+		return rawAddress;
+	}
+
 	public String getDpt() {
 		return dpt;
 	}
 
 	public void setDpt(String dpt) {
-		this.dpt = dpt;
+		this.dpt = DptCodecs.intern(dpt);
+		this.codec = null;
 	}
 
 	@Override
@@ -57,52 +116,67 @@ public class GroupAddressInfo implements Serializable {
 		return "{" + name + "|" + dpt + "}";
 	}
 
-	void createTranslator() throws KNXException {
-		try {
-			xlator = TranslatorTypes.createTranslator(0, dpt);
-		} catch (KNXException e) {
-			L.warning("WARNING! Unable to create translator for DPT " + dpt + " of " + name
-					+ ", using 1-byte-value as a fallback.");
-			xlator = TranslatorTypes.createTranslator(0, "5.005");
+	/**
+	 * The shared codec for the DPT of this group address, resolved on first use.
+	 */
+	DptCodec getCodec() {
+		DptCodec result = codec;
+		if (result == null) {
+			// Resolving twice in a race is harmless, both threads get the same shared codec.
+			result = DptCodecs.forDptOrFallback(dpt, name);
+			codec = result;
 		}
-		xlator.setAppendUnit(false);
+		return result;
 	}
 
-	private Object translate(byte[] asdu) {
-		xlator.setData(asdu);
-		if (xlator instanceof DPTXlatorBoolean) {
-			if (((DPTXlatorBoolean) xlator).getValueBoolean())
-				return Integer.valueOf(1);
-			else
-				return Integer.valueOf(0);
-		}
-		// TODO there must be a less lame method to do this
-		String strVal = xlator.getValue();
-		try {
-			return Integer.valueOf(strVal);
-		} catch (NumberFormatException nfe) {
+	/**
+	 * Translates the given ASDU and stores it as the last value.
+	 *
+	 * <p>
+	 * Callers must synchronize on this object, since KNX links receive concurrently.
+	 * </p>
+	 *
+	 * @return Whether the value has changed.
+	 */
+	public boolean translateAndStoreValue(byte[] asdu, long now) throws KNXFormatException {
+		DptCodec codec = getCodec();
+		DptDecoder.Kind kind = codec.getKind();
+		double number = 0;
+		String text = null;
+		if (kind != null) {
+			number = codec.decodeNumber(asdu);
+		} else {
+			// Exotic type, go through the translator's textual representation.
+			String strVal = codec.decodeText(asdu, false);
 			try {
-				return Double.valueOf(strVal);
-			} catch (NumberFormatException nfe2) {
-				return strVal;
+				number = Integer.parseInt(strVal);
+				kind = DptDecoder.Kind.INTEGRAL;
+			} catch (NumberFormatException nfe) {
+				try {
+					number = Double.parseDouble(strVal);
+					kind = DptDecoder.Kind.DOUBLE;
+				} catch (NumberFormatException nfe2) {
+					text = strVal;
+					kind = DptDecoder.Kind.TEXT;
+				}
 			}
 		}
-	}
 
-	public Object translateAndStoreValue(byte[] asdu, long now) {
-		Object newVal = translate(asdu);
-		if (!newVal.equals(lastValue)) {
-			lastValue = newVal;
+		boolean changed = kind != lastKind || Double.compare(number, lastNumber) != 0
+				|| (text == null ? lastText != null : !text.equals(lastText));
+		if (changed) {
+			lastKind = kind;
+			lastNumber = number;
+			lastText = text;
 			lastValueTimestamp = now;
 		}
-		return newVal;
+		return changed;
 	}
 
-	public String getTextutal() {
-		String textual;
-		xlator.setAppendUnit(true);
-		textual = xlator.getValue();
-		xlator.setAppendUnit(false);
-		return textual;
+	/**
+	 * The textual representation of the given ASDU including its unit.
+	 */
+	public String getTextutal(byte[] asdu) {
+		return getCodec().decodeText(asdu, true);
 	}
-}
\ No newline at end of file
+}
@@ -6,10 +6,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Logger;
 
 import com.tellerulam.knx2mqtt.model.Cache;
@@ -19,15 +24,40 @@ import de.haumacher.msgbuf.json.JsonReader;
 import de.haumacher.msgbuf.json.JsonWriter;
 import de.haumacher.msgbuf.server.io.ReaderAdapter;
 import de.haumacher.msgbuf.server.io.WriterAdapter;
-import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.exception.KNXFormatException;
 
 public class GroupAddressManager {
 	private static final Logger L = Logger.getLogger(GroupAddressManager.class.getName());
 
-	private Map<String, GroupAddressInfo> gaTable = new HashMap<>();
+	/**
+	 * Number of possible 16-bit group addresses.
+	 */
+	static final int ADDRESS_SPACE = 0x10000;
+
+	/**
+	 * All {@link GroupAddressInfo}s indexed by their raw 16-bit group address. Entries from the
+	 * {@link #binaryCache} are filled in on first access, possibly concurrently.
+	 */
+	private final AtomicReferenceArray<GroupAddressInfo> gaByAddress = new AtomicReferenceArray<>(ADDRESS_SPACE);
+
+	/**
+	 * Explicitly added {@link GroupAddressInfo}s.
+	 */
+	private final List<GroupAddressInfo> gaList = new ArrayList<>();
 
 	private Map<String, GroupAddressInfo> gaByName = new HashMap<>();
 
+	/**
+	 * Group addresses loaded from a binary cache file, materialized on demand, or <code>null</code>.
+	 */
+	private volatile BinaryGACache binaryCache;
+
+	/**
+	 * Index of {@link #gaByName} for resolving command topics, compiled on demand.
+	 */
+	private volatile TopicTrie nameTrie;
+
 	/**
 	 * Creates a {@link GroupAddressManager}.
 	 */
@@ -35,40 +65,172 @@ public class GroupAddressManager {
 		super();
 	}
 
+	/**
+	 * Looks up the {@link GroupAddressInfo} for a group address in textual form, e.g.
+	 * <code>1/2/3</code>.
+	 */
 	public GroupAddressInfo getGAInfoForAddress(String address) {
-		return gaTable.get(address);
+		GroupAddress ga;
+		try {
+			ga = new GroupAddress(address);
+		} catch (KNXFormatException e) {
+			return null;
+		}
+		return getGAInfoForAddress(ga);
+	}
+
+	/**
+	 * Looks up the {@link GroupAddressInfo} for the given group address.
+	 */
+	public GroupAddressInfo getGAInfoForAddress(GroupAddress address) {
+		return getGAInfoForAddress(address.getRawAddress());
+	}
+
+	/**
+	 * Looks up the {@link GroupAddressInfo} for the given raw 16-bit group address.
+	 */
+	public GroupAddressInfo getGAInfoForAddress(int rawAddress) {
+		GroupAddressInfo result = gaByAddress.get(rawAddress);
+		if (result == null && binaryCache != null) {
+			result = materialize(rawAddress);
+		}
+		return result;
+	}
+
+	private GroupAddressInfo materialize(int rawAddress) {
+		BinaryGACache cache = binaryCache;
+		int index = cache.indexOf(rawAddress);
+		if (index < 0) {
+			return null;
+		}
+		GroupAddressInfo gai = new GroupAddressInfo(cache.getName(index), rawAddress);
+		gai.setDpt(cache.getDpt(index));
+		if (gaByAddress.compareAndSet(rawAddress, null, gai)) {
+			return gai;
+		}
+		// Materialized concurrently.
+		return gaByAddress.get(rawAddress);
 	}
 
 	public GroupAddressInfo getGAInfoForName(String name) {
-		return gaByName.get(name);
+		int rawAddress = getNameTrie().lookup(name, 0);
+		return rawAddress == TopicTrie.NONE ? null : getGAInfoForAddress(rawAddress);
+	}
+
+	/**
+	 * The {@link TopicTrie} resolving group names to their addresses.
+	 */
+	public TopicTrie getNameTrie() {
+		TopicTrie result = nameTrie;
+		if (result == null) {
+			synchronized (this) {
+				result = nameTrie;
+				if (result == null) {
+					result = TopicTrie.compile(addressByName());
+					nameTrie = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private Map<String, Integer> addressByName() {
+		Map<String, Integer> result = new HashMap<>();
+		BinaryGACache cache = binaryCache;
+		if (cache != null) {
+			// Explicitly added entries replace cache entries with the same address.
+			BitSet explicit = new BitSet(ADDRESS_SPACE);
+			for (GroupAddressInfo gai : gaList) {
+				explicit.set(gai.getRawAddress());
+			}
+			for (int n = 0, cnt = cache.size(); n < cnt; n++) {
+				int rawAddress = cache.getRawAddress(n);
+				if (!explicit.get(rawAddress)) {
+					result.put(cache.getName(n), Integer.valueOf(rawAddress));
+				}
+			}
+		}
+		for (Entry<String, GroupAddressInfo> entry : gaByName.entrySet()) {
+			result.put(entry.getKey(), Integer.valueOf(entry.getValue().getRawAddress()));
+		}
+		return result;
 	}
 
 	/**
 	 * Number of group address assignments.
 	 */
 	public int size() {
-		return gaTable.size();
+		BinaryGACache cache = binaryCache;
+		if (cache == null) {
+			return gaList.size();
+		}
+		int result = cache.size();
+		for (GroupAddressInfo gai : gaList) {
+			if (cache.indexOf(gai.getRawAddress()) < 0) {
+				result++;
+			}
+		}
+		return result;
 	}
 
 	/**
-	 * Adds a new {@link GroupAddressInfo}.
+	 * Adds a new {@link GroupAddressInfo}, replacing a previous one with the same address.
 	 */
 	public void add(GroupAddressInfo gai) {
-		gaTable.put(gai.getAddress(), gai);
+		int rawAddress = gai.getRawAddress();
+		GroupAddressInfo before = gaByAddress.get(rawAddress);
+		int index = before == null ? -1 : gaList.indexOf(before);
+		if (index >= 0) {
+			gaList.set(index, gai);
+			if (gaByName.get(before.getName()) == before)
+				gaByName.remove(before.getName());
+		} else {
+			gaList.add(gai);
+		}
+		gaByAddress.set(rawAddress, gai);
 		gaByName.put(gai.getName(), gai);
+		nameTrie = null;
 	}
 
 	/**
 	 * All {@link GroupAddressInfo}s.
+	 *
+	 * <p>
+	 * Materializes all entries of a binary cache.
+	 * </p>
 	 */
 	public Collection<GroupAddressInfo> addresses() {
-		return gaTable.values();
+		BinaryGACache cache = binaryCache;
+		if (cache == null) {
+			return Collections.unmodifiableList(gaList);
+		}
+		List<GroupAddressInfo> result = new ArrayList<>(cache.size() + gaList.size());
+		for (int n = 0, cnt = cache.size(); n < cnt; n++) {
+			result.add(getGAInfoForAddress(cache.getRawAddress(n)));
+		}
+		for (GroupAddressInfo gai : gaList) {
+			if (cache.indexOf(gai.getRawAddress()) < 0) {
+				result.add(gai);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Parses a group address in textual form, e.g. <code>1/2/3</code>, into its raw 16-bit value.
+	 */
+	static int parseAddress(String address) {
+		try {
+			return new GroupAddress(address).getRawAddress();
+		} catch (KNXFormatException e) {
+			throw new IllegalArgumentException("Invalid group address '" + address + "'.", e);
+		}
 	}
 
 	/**
 	 * Loads group address information from the given file.
 	 */
-	public void readFromFile(File cacheFile) throws IOException, KNXException {
+	public void readFromFile(File cacheFile) throws IOException {
 		Cache cache;
 		try (JsonReader json = new JsonReader(
 				new ReaderAdapter(new InputStreamReader(new FileInputStream(cacheFile), "utf-8")))) {
@@ -79,12 +241,30 @@ public class GroupAddressManager {
 			GAInfo info = entry.getValue();
 			GroupAddressInfo gai = new GroupAddressInfo(info.getName(), entry.getKey());
 			gai.setDpt(info.getDpt());
-			gai.createTranslator();
 	
 			add(gai);
 		}
 	}
 
+	/**
+	 * Maps a binary group address cache file, see {@link BinaryGACache}.
+	 *
+	 * <p>
+	 * The {@link GroupAddressInfo}s are created when they are first looked up.
+	 * </p>
+	 */
+	public void readFromBinaryFile(File cacheFile) throws IOException {
+		binaryCache = BinaryGACache.open(cacheFile);
+		nameTrie = null;
+	}
+
+	/**
+	 * Saves group address information to the given binary file, see {@link BinaryGACache}.
+	 */
+	public void storeToBinaryFile(File cacheFile) throws IOException {
+		BinaryGACache.write(cacheFile, addresses());
+	}
+
 	/**
 	 * Saves group address information to the given file.
 	 */
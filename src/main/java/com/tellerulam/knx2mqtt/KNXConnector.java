@@ -3,6 +3,7 @@ package com.tellerulam.knx2mqtt;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,42 +14,104 @@ import tuwien.auto.calimero.FrameEvent;
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.IndividualAddress;
 import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMI;
+import tuwien.auto.calimero.cemi.CEMILData;
 import tuwien.auto.calimero.dptxlator.DPTXlator;
-import tuwien.auto.calimero.dptxlator.DPTXlatorBoolean;
 import tuwien.auto.calimero.exception.KNXException;
 import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
-import tuwien.auto.calimero.knxnetip.KNXnetIPConnection;
+import tuwien.auto.calimero.link.KNXLinkClosedException;
 import tuwien.auto.calimero.link.KNXNetworkLink;
 import tuwien.auto.calimero.link.KNXNetworkLinkIP;
 import tuwien.auto.calimero.link.NetworkLinkListener;
 import tuwien.auto.calimero.link.medium.TPSettings;
-import tuwien.auto.calimero.process.ProcessCommunicationBase;
 import tuwien.auto.calimero.process.ProcessCommunicator;
 import tuwien.auto.calimero.process.ProcessCommunicatorImpl;
 import tuwien.auto.calimero.process.ProcessEvent;
 import tuwien.auto.calimero.process.ProcessListener;
 import tuwien.auto.calimero.process.ProcessListenerEx;
 
+/**
+ * A link to a KNX gateway of a {@link Site}, with its own {@link KNXSendScheduler}.
+ *
+ * @see KNXLinks
+ */
 public class KNXConnector extends Thread implements NetworkLinkListener {
 	private final Logger L = Logger.getLogger(getClass().getName());
 
+	private final KNXLinks _links;
+
+	private final Site _site;
+
+	/**
+	 * Index of this link in the configured list of gateways.
+	 */
+	private final int _index;
+
+	private final String _host;
+
+	private final int _port;
+
 	private final MQTTHandler _mqtt;
 
-	private KNXNetworkLink link;
+	private final StatusPublisher _publisher;
+
+	private final PublishPolicies _publishPolicies;
+
+	private final StateStore _stateStore;
+
+	private volatile KNXNetworkLink link;
+
+	private final KNXSendScheduler _sendScheduler;
 
 	private ProcessCommunicator pc;
 
 	private final ProcessListener processListener;
 
-	private KNXConnector(GroupAddressManager addressManager, MQTTHandler mqtt) {
-		super("KNX Connection Thread");
-		processListener = new MyProcessListener(addressManager);
+	/**
+	 * Interval in which the link state is checked, in case a close event is missed.
+	 */
+	private static final long SUPERVISION_INTERVAL = 10 * 1000;
+
+	/**
+	 * Delay before reconnecting after the link was lost, doubled after each failed attempt.
+	 */
+	private final long _reconnectMin;
+
+	/**
+	 * Upper bound of the reconnect delay.
+	 */
+	private final long _reconnectMax;
+
+	/**
+	 * Monitor notified when the link is closed.
+	 */
+	private final Object _linkState = new Object();
+
+	/**
+	 * Whether the current link was reported closed, guarded by {@link #_linkState}.
+	 */
+	private boolean _linkClosed;
+
+	KNXConnector(KNXLinks links, int index, String host, int port, MQTTHandler mqtt, StatusPublisher publisher) {
+		super(links.getSite().qualify(index == 0 ? "KNX Connection Thread" : "KNX Connection Thread " + (index + 1)));
+		_links = links;
+		_site = links.getSite();
+		_index = index;
+		_host = host;
+		_port = port;
+		processListener = new MyProcessListener(_site.getAddressManager());
 		_mqtt = mqtt;
+		_publisher = publisher;
+		_publishPolicies = _site.getPublishPolicies();
+		_stateStore = _site.getStateStore();
+		_reconnectMin = _site.getLong(PropertyNames.KNX2MQTT_KNX_RECONNECT_MIN, 250);
+		_reconnectMax = _site.getLong(PropertyNames.KNX2MQTT_KNX_RECONNECT_MAX, 30 * 1000);
+		_sendScheduler = new KNXSendScheduler(this, _site, index);
 	}
 
 	public void connect() throws KNXException, InterruptedException {
 		int knxConnectionType = KNXNetworkLinkIP.TUNNELING;
-		String connType = System.getProperty(PropertyNames.KNX2MQTT_KNX_TYPE);
+		String connType = _site.getProperty(PropertyNames.KNX2MQTT_KNX_TYPE);
 		if (connType != null) {
 			if ("TUNNELING".equals(connType))
 				knxConnectionType = KNXNetworkLinkIP.TUNNELING;
@@ -63,17 +126,18 @@ public class KNXConnector extends Thread implements NetworkLinkListener {
 		if (knxConnectionType != -1)
 			connectIP(knxConnectionType);
 
-		_mqtt.doSetKNXConnectionState(true);
+		_mqtt.doSetKNXConnectionState(_site, _links.isConnected());
 
+		synchronized (_linkState) {
+			_linkClosed = false;
+		}
 		link.addLinkListener(this);
 		pc = new ProcessCommunicatorImpl(link);
 		pc.addProcessListener(processListener);
 	}
 
 	private void connectIP(int knxConnectionType) throws KNXException, InterruptedException {
-		String hostIP = System.getProperty(PropertyNames.KNX2MQTT_KNX_IP, "setme");
-		int port = Integer.getInteger(PropertyNames.KNX2MQTT_KNX_PORT, KNXnetIPConnection.DEFAULT_PORT).intValue();
-		String localIP = System.getProperty(PropertyNames.KNX2MQTT_KNX_LOCALIP);
+		String localIP = _site.getProperty(PropertyNames.KNX2MQTT_KNX_LOCALIP);
 		InetSocketAddress local;
 		if (localIP != null) {
 			local = new InetSocketAddress(localIP, 0);
@@ -87,9 +151,9 @@ public class KNXConnector extends Thread implements NetworkLinkListener {
 			}
 			local = new InetSocketAddress(localhost, 0);
 		}
-		L.log(Level.INFO, "Establishing KNX IP connection to " + hostIP + ":" + port + " ("
+		L.log(Level.INFO, "Establishing KNX IP connection to " + _host + ":" + _port + " ("
 				+ (knxConnectionType == KNXNetworkLinkIP.TUNNELING ? "TUNNEL" : "ROUTER") + ") from " + local);
-		link = new KNXNetworkLinkIP(knxConnectionType, local, new InetSocketAddress(hostIP, port), false,
+		link = new KNXNetworkLinkIP(knxConnectionType, local, new InetSocketAddress(_host, _port), false,
 				TPSettings.TP1);
 		L.info("KNX IP Connection established");
 	}
@@ -105,13 +169,32 @@ public class KNXConnector extends Thread implements NetworkLinkListener {
 
 	@Override
 	public void linkClosed(CloseEvent ce) {
-		L.info("Link closed: " + ce.getReason());
-		_mqtt.doSetKNXConnectionState(false);
+		L.info("Link to " + _host + ":" + _port + " closed: " + ce.getReason());
+		forgetOwnAddress();
+		_mqtt.doSetKNXConnectionState(_site, _links.isConnected());
+		synchronized (_linkState) {
+			_linkClosed = true;
+			_linkState.notifyAll();
+		}
 	}
 
 	@Override
 	public void confirmation(FrameEvent fe) {
-		/* Ignore */
+		TelegramDeduplicator deduplicator = _links.getDeduplicator();
+		CEMI frame = fe.getFrame();
+		if (deduplicator != null && frame instanceof CEMILData) {
+			// The gateway fills in the individual address of the tunnel.
+			deduplicator.setOwnAddress(_index, ((CEMILData) frame).getSource().getRawAddress());
+		}
+	}
+
+	/**
+	 * Forgets the individual address of this link, the next connection may get another one.
+	 */
+	private void forgetOwnAddress() {
+		TelegramDeduplicator deduplicator = _links.getDeduplicator();
+		if (deduplicator != null)
+			deduplicator.clearOwnAddress(_index);
 	}
 
 	private class MyProcessListener extends ProcessListenerEx {
@@ -135,32 +218,67 @@ public class KNXConnector extends Thread implements NetworkLinkListener {
 				return;
 			}
 
-			GroupAddressInfo gaInfo = _addressManager.getGAInfoForAddress(dest.toString());
+			long received = System.nanoTime();
+			TelegramDeduplicator deduplicator = _links.getDeduplicator();
+			if (deduplicator != null
+					&& !deduplicator.accept(_index, dest.getRawAddress(), src.getRawAddress(), asdu, received)) {
+				Metrics.KNX_IN_DUPLICATES.increment();
+				return;
+			}
+			GroupAddressInfo gaInfo = _addressManager.getGAInfoForAddress(dest);
 
 			long now = System.currentTimeMillis();
 
 			try {
-				Object val;
 				if (gaInfo == null) {
+					Metrics.KNX_IN_UNKNOWN.increment();
 					String dpt;
+					DptDecoder decoder;
 					if (asdu.length == 1) {
-						val = Integer.valueOf(asUnsigned(pe, ProcessCommunicationBase.UNSCALED));
+						decoder = DptDecoders.UNSIGNED_8;
 						dpt = "5.004";
 					} else if (asdu.length == 2) {
-						val = Double.valueOf(asFloat(pe, false));
+						decoder = DptDecoders.FLOAT_16;
 						dpt = "9.001";
 					} else {
-						val = "Unknown";
+						decoder = null;
 						dpt = "0.000";
 					}
-					L.info("Got " + val + " to unknown " + dest + " from " + src + " (ASDU length " + asdu.length
-							+ ")");
-					_mqtt.doPublish(dest.toString(), val, src.toString(), dpt, null, now, now);
+					StatusEncoder.Template template = _site.createStatusTemplate(dest.toString(), dpt);
+					if (decoder == null) {
+						L.info("Got unknown value to " + dest + " from " + src + " (ASDU length " + asdu.length + ")");
+						_publisher.publish(template, DptDecoder.Kind.TEXT, 0, "Unknown", src, null, now, now, received);
+					} else {
+						double val = decoder.decodeDouble(asdu);
+						L.info("Got " + val + " to unknown " + dest + " from " + src + " (ASDU length " + asdu.length
+								+ ")");
+						_publisher.publish(template, decoder.getKind(), val, null, src, null, now, now,
+								received);
+					}
 				} else {
-					_mqtt.doPublish(gaInfo.getName(), gaInfo.translateAndStoreValue(asdu, now), src.toString(),
-							gaInfo.getDpt(), gaInfo.getTextutal(), now, gaInfo.lastValueTimestamp);
+					Metrics.KNX_IN_KNOWN.increment();
+					Metrics.countIn(gaInfo.getCodec().getMainType());
+					// Other links may receive a telegram to the same group address at the same time.
+					synchronized (gaInfo) {
+						gaInfo.translateAndStoreValue(asdu, now);
+						Metrics.KNX_TRANSLATE.recordSince(received);
+						if (_stateStore != null)
+							_stateStore.record(gaInfo.getRawAddress(), asdu, gaInfo.lastValueTimestamp, now);
+						StatusPublisher.Event event = new StatusPublisher.Event(_site.getStatusTemplate(gaInfo),
+								gaInfo.lastKind, gaInfo.lastNumber, gaInfo.lastText, src, gaInfo.getTextutal(asdu),
+								now, gaInfo.lastValueTimestamp, received);
+						gaInfo.lastEvent = event;
+						PublishFilter filter = _publishPolicies.getFilter(gaInfo);
+						if (KNXSendScheduler.answerRead(gaInfo)) {
+							// Somebody asked for this value, do not suppress it.
+							filter.submitAnswer(event, _publisher);
+						} else {
+							filter.submit(event, _publisher);
+						}
+					}
 				}
 			} catch (KNXException e) {
+				Metrics.KNX_IN_ERRORS.increment();
 				L.log(Level.WARNING, "Error converting ASDU to " + dest + " from " + src);
 			}
 
@@ -186,40 +304,84 @@ public class KNXConnector extends Thread implements NetworkLinkListener {
 
 	@Override
 	public void run() {
+		int failures = 0;
+		long downSince = 0;
 		for (;;) {
+			long delay;
 			try {
 				connect();
-				while (link.isOpen())
-					Thread.sleep(1000);
-			} catch (Exception e) {
-				L.log(Level.WARNING, "Error in KNX connection, will retry in 10s", e);
-				try {
-					Thread.sleep(5 * 1000);
-					if (pc != null)
-						pc.detach();
-					if (link != null)
-						link.close();
-					Thread.sleep(5 * 1000);
-				} catch (Exception e1) {
-					/* Ignore */
+				if (downSince != 0) {
+					Metrics.KNX_RECONNECT.recordSince(downSince);
+					L.info("KNX link to " + _host + ":" + _port + " re-established after "
+							+ (System.nanoTime() - downSince) / 1000000 + "ms and " + (failures + 1) + " attempt(s)");
 				}
+				failures = 0;
+				awaitClose();
+				downSince = System.nanoTime();
+				delay = reconnectDelay(failures);
+				L.info("Reconnecting to " + _host + ":" + _port + " in " + delay + "ms");
+			} catch (Exception e) {
+				if (downSince == 0)
+					downSince = System.nanoTime();
+				delay = reconnectDelay(++failures);
+				L.log(Level.WARNING,
+						"Error in KNX connection to " + _host + ":" + _port + ", will retry in " + delay + "ms", e);
+			}
+			disconnect();
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				/* Ignore */
 			}
 		}
 	}
 
-	private static KNXConnector conn;
+	/**
+	 * Waits until the current link is closed.
+	 */
+	private void awaitClose() throws InterruptedException {
+		KNXNetworkLink currentLink = link;
+		synchronized (_linkState) {
+			while (!_linkClosed && currentLink.isOpen())
+				_linkState.wait(SUPERVISION_INTERVAL);
+		}
+	}
+
+	/**
+	 * Releases the current link and its process communicator.
+	 */
+	private void disconnect() {
+		forgetOwnAddress();
+		try {
+			if (pc != null) {
+				pc.detach();
+				pc = null;
+			}
+			KNXNetworkLink currentLink = link;
+			if (currentLink != null) {
+				currentLink.removeLinkListener(this);
+				currentLink.close();
+			}
+		} catch (Exception e) {
+			/* Ignore */
+		}
+	}
 
-	public static void launch(GroupAddressManager addressManager, MQTTHandler mqtt) {
-		conn = new KNXConnector(addressManager, mqtt);
-		conn.start();
+	/**
+	 * Exponential backoff with jitter: a random delay between half and the full doubled minimum
+	 * delay, so that bridges that lost the same gateway do not reconnect in lockstep.
+	 */
+	private long reconnectDelay(int failures) {
+		long base = Math.min(_reconnectMax, _reconnectMin << Math.min(failures, 20));
+		return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
 	}
 
 	/* This is straight from Calimero / ProcessCommunicatorImpl */
-	private static final int GROUP_READ = 0x00;
+	static final int GROUP_READ = 0x00;
 
-	private static final int GROUP_WRITE = 0x80;
+	static final int GROUP_WRITE = 0x80;
 
-	private static byte[] createGroupAPDU(final int service, final DPTXlator t) {
+	static byte[] createGroupAPDU(final int service, final DPTXlator t) {
 		// check for group read
 		if (service == 0x00)
 			return new byte[2];
@@ -234,34 +396,46 @@ public class KNXConnector extends Thread implements NetworkLinkListener {
 		return t.getData(buf, offset);
 	}
 
-	public static void doGroupWrite(String gaspec, String val, GroupAddressInfo gai) {
-		try {
-			GroupAddress ga = new GroupAddress(gaspec);
-
-			// We do special handling for booleans
-			if (gai.xlator instanceof DPTXlatorBoolean) {
-				if ("0".equals(val))
-					((DPTXlatorBoolean) gai.xlator).setValue(false);
-				else if ("1".equals(val))
-					((DPTXlatorBoolean) gai.xlator).setValue(true);
-				else
-					gai.xlator.setValue(val);
-			} else
-				gai.xlator.setValue(val);
-			conn.link.sendRequestWait(ga, Priority.LOW, createGroupAPDU(GROUP_WRITE, gai.xlator));
-		} catch (Exception e) {
-			conn.L.log(Level.WARNING, "Error when writing " + val + " to " + gaspec, e);
-		}
+	/**
+	 * The scheduler for outgoing telegrams of this link.
+	 */
+	KNXSendScheduler getSendScheduler() {
+		return _sendScheduler;
 	}
 
-	public static void doGroupRead(String gaspec, String val, GroupAddressInfo gai) {
-		try {
-			GroupAddress ga = new GroupAddress(gaspec);
-			conn.link.sendRequestWait(ga, Priority.LOW, DataUnitBuilder.createLengthOptimizedAPDU(GROUP_READ, null));
-			conn.L.log(Level.INFO, "Sent read request for " + gaspec);
-		} catch (Exception e) {
-			conn.L.log(Level.WARNING, "Error when reading from " + gaspec, e);
-		}
+	/**
+	 * Whether this link is currently open.
+	 */
+	boolean isOpen() {
+		KNXNetworkLink currentLink = link;
+		return currentLink != null && currentLink.isOpen();
+	}
+
+	/**
+	 * Sends a group write and waits for its confirmation.
+	 */
+	void sendGroupWrite(GroupAddressInfo gai, byte[] apdu, Priority priority) throws KNXException, InterruptedException {
+		TelegramDeduplicator deduplicator = _links.getDeduplicator();
+		if (deduplicator != null)
+			deduplicator.sent(_index, gai.getRawAddress(), DataUnitBuilder.extractASDU(apdu),
+					System.nanoTime());
+		currentLink().sendRequestWait(new GroupAddress(gai.getRawAddress()), priority, apdu);
+	}
+
+	/**
+	 * Sends a group read request and waits for its confirmation.
+	 */
+	void sendGroupRead(GroupAddressInfo gai, Priority priority) throws KNXException, InterruptedException {
+		currentLink().sendRequestWait(new GroupAddress(gai.getRawAddress()), priority,
+				DataUnitBuilder.createLengthOptimizedAPDU(GROUP_READ, null));
+		L.log(Level.FINE, "Sent read request for " + gai.getAddress());
+	}
+
+	private KNXNetworkLink currentLink() throws KNXLinkClosedException {
+		KNXNetworkLink currentLink = link;
+		if (currentLink == null)
+			throw new KNXLinkClosedException("Not connected to KNX");
+		return currentLink;
 	}
 
 }
@@ -0,0 +1,203 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import tuwien.auto.calimero.knxnetip.KNXnetIPConnection;
+
+/**
+ * The KNX links of a {@link Site}.
+ *
+ * <p>
+ * Several links to the same installation can be configured, e.g. several tunnels of one IP router or
+ * one tunnel per line coupler, to spread outgoing telegrams over their acknowledge cycles. Each link
+ * has its own {@link KNXSendScheduler}, outgoing telegrams are assigned to a link by
+ * {@link LinkRoutes}. Telegrams received through several links are merged by a
+ * {@link TelegramDeduplicator}.
+ * </p>
+ */
+public class KNXLinks {
+	private static final Logger L = Logger.getLogger(KNXLinks.class.getName());
+
+	private final Site _site;
+
+	private final KNXConnector[] _connectors;
+
+	private final LinkRoutes _routes;
+
+	private final StatusPublisher _publisher;
+
+	/**
+	 * Maximum age in milliseconds of a received value that answers a group read request, 0 to
+	 * always read from the bus.
+	 */
+	private final long _readCacheTTL;
+
+	/**
+	 * Merges incoming telegrams, <code>null</code> with a single link.
+	 */
+	private final TelegramDeduplicator _deduplicator;
+
+	private KNXLinks(Site site, MQTTHandler mqtt, StatusPublisher publisher) {
+		_site = site;
+		_publisher = publisher;
+		_readCacheTTL = site.getLong(PropertyNames.KNX2MQTT_KNX_READCACHETTL, 0);
+		int defaultPort = site.getInt(PropertyNames.KNX2MQTT_KNX_PORT, KNXnetIPConnection.DEFAULT_PORT);
+		List<KNXConnector> connectors = new ArrayList<>();
+		for (String gateway : site.getProperty(PropertyNames.KNX2MQTT_KNX_IP, "setme").split(",")) {
+			gateway = gateway.trim();
+			if (gateway.isEmpty())
+				continue;
+			int sep = gateway.lastIndexOf(':');
+			String host = sep < 0 ? gateway : gateway.substring(0, sep);
+			int port = sep < 0 ? defaultPort : Integer.parseInt(gateway.substring(sep + 1));
+			connectors.add(new KNXConnector(this, connectors.size(), host, port, mqtt, publisher));
+		}
+		if (connectors.size() > Integer.SIZE - 1)
+			throw new IllegalArgumentException("At most " + (Integer.SIZE - 1) + " KNX links are supported");
+		_connectors = connectors.toArray(new KNXConnector[connectors.size()]);
+		_routes = new LinkRoutes(site.getProperty(PropertyNames.KNX2MQTT_KNX_LINKROUTES), _connectors.length);
+		_deduplicator = _connectors.length > 1
+				? new TelegramDeduplicator(_connectors.length,
+						site.getLong(PropertyNames.KNX2MQTT_KNX_DEDUPWINDOW, 500))
+				: null;
+	}
+
+	/**
+	 * Starts the configured KNX links of the given site.
+	 */
+	public static KNXLinks launch(Site site, MQTTHandler mqtt, StatusPublisher publisher) {
+		final KNXLinks links = new KNXLinks(site, mqtt, publisher);
+		site.setLinks(links);
+		for (KNXConnector conn : links._connectors) {
+			conn.start();
+			conn.getSendScheduler().start();
+		}
+		Metrics.register(site.qualifyMetric("knx.out.queue.depth"), new Metrics.Gauge() {
+			@Override
+			public long get() {
+				long result = 0;
+				for (KNXConnector conn : links._connectors)
+					result += conn.getSendScheduler().getQueueDepth();
+				return result;
+			}
+		});
+		Metrics.register(site.qualifyMetric("knx.out.coalesced"), new Metrics.Gauge() {
+			@Override
+			public long get() {
+				long result = 0;
+				for (KNXConnector conn : links._connectors)
+					result += conn.getSendScheduler().getCoalescedCount();
+				return result;
+			}
+		});
+		Metrics.register(site.qualifyMetric("knx.links.open"), new Metrics.Gauge() {
+			@Override
+			public long get() {
+				long result = 0;
+				for (KNXConnector conn : links._connectors)
+					if (conn.isOpen())
+						result++;
+				return result;
+			}
+		});
+		return links;
+	}
+
+	/**
+	 * The site of these links.
+	 */
+	public Site getSite() {
+		return _site;
+	}
+
+	/**
+	 * The merger of incoming telegrams, <code>null</code> with a single link.
+	 */
+	TelegramDeduplicator getDeduplicator() {
+		return _deduplicator;
+	}
+
+	/**
+	 * Schedules a group write of the given value, see {@link KNXSendScheduler}.
+	 */
+	public void doGroupWrite(String gaspec, String val, GroupAddressInfo gai) {
+		try {
+			connectorFor(gai).getSendScheduler().submitWrite(gai, gai.getCodec().encodeGroupWrite(val));
+		} catch (Exception e) {
+			Metrics.MQTT_SET_ERRORS.increment();
+			L.log(Level.WARNING, _site.qualify("Error when writing " + val + " to " + gaspec), e);
+		}
+	}
+
+	/**
+	 * Schedules a group read, see {@link KNXSendScheduler}, or publishes the last received value
+	 * again, if it is recent enough.
+	 */
+	public void doGroupRead(String gaspec, String val, GroupAddressInfo gai) {
+		if (_readCacheTTL > 0) {
+			StatusPublisher.Event last = gai.lastEvent;
+			if (last != null && System.currentTimeMillis() - last.updateTime < _readCacheTTL) {
+				Metrics.MQTT_GET_CACHED.increment();
+				// Without a filter, no older update can be pending.
+				PublishFilter filter = gai.publishFilter;
+				if (filter != null)
+					filter.submitAnswer(last.deferred(), _publisher);
+				else
+					_publisher.publish(last.deferred());
+				return;
+			}
+		}
+		if (!connectorFor(gai).getSendScheduler().submitRead(gai))
+			L.fine("Read request for " + gaspec + " already pending");
+	}
+
+	/**
+	 * Schedules a group read with the given class on the link of the group address, see
+	 * {@link KNXSendScheduler#submitRead(GroupAddressInfo, SendClass)}.
+	 */
+	boolean submitRead(GroupAddressInfo gai, SendClass sendClass) {
+		return connectorFor(gai).getSendScheduler().submitRead(gai, sendClass);
+	}
+
+	/**
+	 * The link for outgoing telegrams to the given group address.
+	 *
+	 * <p>
+	 * Group addresses without a configured route use another open link while their link is down.
+	 * Their pending telegrams stay with the previous link until it has reconnected, since each
+	 * group address has only a single pending slot.
+	 * </p>
+	 */
+	private KNXConnector connectorFor(GroupAddressInfo gai) {
+		KNXConnector[] all = _connectors;
+		if (all.length == 1)
+			return all[0];
+		int rawAddress = gai.getRawAddress();
+		int index = _routes.getLink(rawAddress);
+		if (index >= 0)
+			return all[index];
+		KNXConnector result = all[rawAddress % all.length];
+		if (!result.isOpen()) {
+			for (KNXConnector other : all) {
+				if (other.isOpen())
+					return other;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Whether at least one link is currently open.
+	 */
+	boolean isConnected() {
+		for (KNXConnector conn : _connectors) {
+			if (conn.isOpen())
+				return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,338 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends group writes and group reads to the KNX bus at a limited telegram rate.
+ *
+ * <p>
+ * Each group address has a single pending write slot. A write to a group address that is still
+ * waiting to be sent replaces the pending value, so that intermediate values (e.g. from a dimmer
+ * slider) are never sent when the bus cannot keep up. Likewise, a read of a group address that is
+ * already waiting to be read is dropped. Submitting never blocks the caller.
+ * </p>
+ *
+ * <p>
+ * A read also counts as pending after it was sent, until any telegram to the group address has
+ * been received or {@link #READ_TIMEOUT} has passed. All requests for the value in the meantime are
+ * answered by the same response.
+ * </p>
+ *
+ * <p>
+ * Telegrams are scheduled by {@link SendClass}: pending telegrams of a higher class are always sent
+ * first, within a class writes go before reads. Writes default to {@link SendClass#INTERACTIVE},
+ * reads to {@link SendClass#NORMAL}. The class of a group address can be configured by name prefix
+ * as a semicolon separated list of <code>prefix:class</code> rules, e.g.
+ * </p>
+ *
+ * <pre>
+ * Alarm/:URGENT;Messwerte/:BULK
+ * </pre>
+ */
+public class KNXSendScheduler extends Thread {
+	private final Logger L = Logger.getLogger(getClass().getName());
+
+	private static final AtomicReferenceFieldUpdater<GroupAddressInfo, byte[]> PENDING_WRITE = AtomicReferenceFieldUpdater
+			.newUpdater(GroupAddressInfo.class, byte[].class, "pendingWrite");
+
+	private static final AtomicIntegerFieldUpdater<GroupAddressInfo> PENDING_READ = AtomicIntegerFieldUpdater
+			.newUpdater(GroupAddressInfo.class, "pendingRead");
+
+	private static final int READ_IDLE = 0;
+
+	private static final int READ_QUEUED = 1;
+
+	private static final int READ_SENT = 2;
+
+	/**
+	 * Time in nanoseconds after which an unanswered group read may be repeated.
+	 */
+	static final long READ_TIMEOUT = TimeUnit.SECONDS.toNanos(3);
+
+	private static final SendClass[] CLASSES = SendClass.values();
+
+	private static final class Rule {
+		final String prefix;
+
+		final SendClass sendClass;
+
+		Rule(String prefix, SendClass sendClass) {
+			this.prefix = prefix;
+			this.sendClass = sendClass;
+		}
+	}
+
+	private final KNXConnector _connector;
+
+	/**
+	 * Group addresses with a pending write by {@link SendClass#ordinal()}, in the order of their first
+	 * pending write.
+	 */
+	private final Queue<GroupAddressInfo>[] _writes;
+
+	/**
+	 * Group addresses with a pending read by {@link SendClass#ordinal()}.
+	 */
+	private final Queue<GroupAddressInfo>[] _reads;
+
+	/**
+	 * Number of entries in all queues.
+	 */
+	private final Semaphore _available = new Semaphore(0);
+
+	/**
+	 * Rules by name prefix, longest prefix first.
+	 */
+	private final List<Rule> _rules = new ArrayList<>();
+
+	/**
+	 * Minimum time between two telegrams in nanoseconds.
+	 */
+	private final long _sendInterval;
+
+	private final AtomicLong _coalesced = new AtomicLong();
+
+	private long _nextSendTime;
+
+	/**
+	 * Creates a {@link KNXSendScheduler}.
+	 */
+	KNXSendScheduler(KNXConnector connector, Site site, int index) {
+		super(site.qualify(index == 0 ? "KNX Sender Thread" : "KNX Sender Thread " + (index + 1)));
+		setDaemon(true);
+		_connector = connector;
+		int rate = Math.max(1, site.getInt(PropertyNames.KNX2MQTT_KNX_SENDRATE, 20));
+		_sendInterval = TimeUnit.SECONDS.toNanos(1) / rate;
+		L.config("Sending at most " + rate + " telegrams per second");
+
+		_writes = createQueues();
+		_reads = createQueues();
+		parseRules(site.getProperty(PropertyNames.KNX2MQTT_KNX_SENDCLASSES));
+	}
+
+	/**
+	 * Creates one queue per {@link SendClass}.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Queue<GroupAddressInfo>[] createQueues() {
+		Queue<GroupAddressInfo>[] result = new Queue[CLASSES.length];
+		for (int n = 0; n < CLASSES.length; n++) {
+			result[n] = new ConcurrentLinkedQueue<>();
+		}
+		return result;
+	}
+
+	private void parseRules(String config) {
+		if (config == null) {
+			return;
+		}
+		for (String rule : config.split(";")) {
+			if (rule.trim().isEmpty()) {
+				continue;
+			}
+			int sep = rule.lastIndexOf(':');
+			if (sep < 0) {
+				throw new IllegalArgumentException("Invalid send class rule '" + rule + "', expected 'prefix:class'.");
+			}
+			String prefix = rule.substring(0, sep).trim();
+			SendClass sendClass;
+			try {
+				sendClass = SendClass.valueOf(rule.substring(sep + 1).trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid send class in rule '" + rule + "'.", e);
+			}
+			_rules.add(new Rule(prefix, sendClass));
+			L.config("Send class for '" + prefix + "': " + sendClass);
+		}
+		Collections.sort(_rules, new Comparator<Rule>() {
+			@Override
+			public int compare(Rule r1, Rule r2) {
+				return Integer.compare(r2.prefix.length(), r1.prefix.length());
+			}
+		});
+	}
+
+	/**
+	 * The configured class of the given group address, or the given default.
+	 */
+	public SendClass getSendClass(GroupAddressInfo gai, SendClass defaultClass) {
+		String name = gai.getName();
+		for (Rule rule : _rules) {
+			if (name.startsWith(rule.prefix)) {
+				return rule.sendClass;
+			}
+		}
+		return defaultClass;
+	}
+
+	/**
+	 * Schedules a group write of the given APDU with the configured class of the group address,
+	 * replacing a write to the same group address that has not yet been sent.
+	 */
+	public void submitWrite(GroupAddressInfo gai, byte[] apdu) {
+		submitWrite(gai, apdu, getSendClass(gai, SendClass.INTERACTIVE));
+	}
+
+	/**
+	 * Schedules a group write of the given APDU, replacing a write to the same group address that
+	 * has not yet been sent.
+	 */
+	public void submitWrite(GroupAddressInfo gai, byte[] apdu, SendClass sendClass) {
+		if (PENDING_WRITE.getAndSet(gai, apdu) == null) {
+			// A replacing write keeps the time of the first one, it waited just as long.
+			gai.pendingWriteSince = System.nanoTime();
+			_writes[sendClass.ordinal()].add(gai);
+			_available.release();
+		} else {
+			_coalesced.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Schedules a group read with the configured class of the group address.
+	 *
+	 * @return Whether the read was scheduled, <code>false</code> if a read of the group address is
+	 *         already pending.
+	 */
+	public boolean submitRead(GroupAddressInfo gai) {
+		return submitRead(gai, getSendClass(gai, SendClass.NORMAL));
+	}
+
+	/**
+	 * Schedules a group read.
+	 *
+	 * @return Whether the read was scheduled, <code>false</code> if a read of the group address is
+	 *         already pending.
+	 */
+	public boolean submitRead(GroupAddressInfo gai, SendClass sendClass) {
+		for (;;) {
+			int state = gai.pendingRead;
+			if (state == READ_QUEUED
+					|| state == READ_SENT && System.nanoTime() - gai.readSentAt < READ_TIMEOUT) {
+				_coalesced.incrementAndGet();
+				return false;
+			}
+			if (PENDING_READ.compareAndSet(gai, state, READ_QUEUED)) {
+				_reads[sendClass.ordinal()].add(gai);
+				_available.release();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Marks a group read of the given group address as answered, called for each telegram received
+	 * for it.
+	 *
+	 * @return Whether a sent group read was waiting for this answer.
+	 */
+	static boolean answerRead(GroupAddressInfo gai) {
+		return gai.pendingRead == READ_SENT && PENDING_READ.compareAndSet(gai, READ_SENT, READ_IDLE);
+	}
+
+	/**
+	 * Number of pending telegrams.
+	 */
+	public int getQueueDepth() {
+		return _available.availablePermits();
+	}
+
+	/**
+	 * Number of pending telegrams of the given class.
+	 */
+	public int getQueueDepth(SendClass sendClass) {
+		return _writes[sendClass.ordinal()].size() + _reads[sendClass.ordinal()].size();
+	}
+
+	/**
+	 * Number of telegrams that were replaced by (or merged into) a pending telegram before being
+	 * sent.
+	 */
+	public long getCoalescedCount() {
+		return _coalesced.get();
+	}
+
+	@Override
+	public void run() {
+		for (;;) {
+			try {
+				_available.acquire();
+				pace();
+				// Choose the telegram only now, after waiting for the bus.
+				sendNext();
+			} catch (InterruptedException e) {
+				L.info("Sender thread interrupted, stopping");
+				return;
+			}
+		}
+	}
+
+	private void sendNext() throws InterruptedException {
+		for (int n = 0; n < CLASSES.length; n++) {
+			GroupAddressInfo gai = _writes[n].poll();
+			if (gai != null) {
+				long since = gai.pendingWriteSince;
+				byte[] apdu = PENDING_WRITE.getAndSet(gai, null);
+				if (send(gai, apdu, CLASSES[n]))
+					Metrics.KNX_WRITE.recordSince(since);
+				return;
+			}
+			gai = _reads[n].poll();
+			if (gai != null) {
+				gai.readSentAt = System.nanoTime();
+				PENDING_READ.set(gai, READ_SENT);
+				if (!send(gai, null, CLASSES[n]))
+					PENDING_READ.compareAndSet(gai, READ_SENT, READ_IDLE);
+				return;
+			}
+		}
+	}
+
+	private void pace() throws InterruptedException {
+		long now = System.nanoTime();
+		long wait = _nextSendTime - now;
+		if (wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+			now = _nextSendTime;
+		}
+		_nextSendTime = now + _sendInterval;
+	}
+
+	/**
+	 * Sends a single telegram and waits for its confirmation.
+	 *
+	 * @return Whether the telegram was confirmed by the bus.
+	 */
+	private boolean send(GroupAddressInfo gai, byte[] apdu, SendClass sendClass) throws InterruptedException {
+		try {
+			if (apdu == null) {
+				_connector.sendGroupRead(gai, sendClass.getPriority());
+				Metrics.KNX_OUT_READS.increment();
+			} else {
+				_connector.sendGroupWrite(gai, apdu, sendClass.getPriority());
+				Metrics.KNX_OUT_WRITES.increment();
+				Metrics.countOut(gai.getCodec().getMainType());
+			}
+			return true;
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Exception e) {
+			Metrics.KNX_OUT_ERRORS.increment();
+			L.log(Level.WARNING, "Error when " + (apdu == null ? "reading from " : "writing to ") + gai.getAddress(), e);
+			return false;
+		}
+	}
+
+}
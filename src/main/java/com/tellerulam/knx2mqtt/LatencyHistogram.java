@@ -0,0 +1,83 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets.
+ *
+ * <p>
+ * Bucket <code>i</code> counts latencies of up to <code>2^i</code> microseconds, so percentiles are
+ * reported with a precision of a factor of two, which is sufficient for spotting saturation.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+	private static final int BUCKETS = 40;
+
+	private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder _count = new LongAdder();
+
+	private final LongAdder _totalMicros = new LongAdder();
+
+	/**
+	 * Records the time passed since the given {@link System#nanoTime()}.
+	 */
+	public void recordSince(long startNanos) {
+		record((System.nanoTime() - startNanos) / 1000);
+	}
+
+	/**
+	 * Records a latency in microseconds.
+	 */
+	public void record(long micros) {
+		if (micros < 0) {
+			micros = 0;
+		}
+		int bucket = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+		_buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+		_count.increment();
+		_totalMicros.add(micros);
+	}
+
+	/**
+	 * Number of recorded latencies.
+	 */
+	public long getCount() {
+		return _count.sum();
+	}
+
+	/**
+	 * Average latency in microseconds.
+	 */
+	public long getAverage() {
+		long count = _count.sum();
+		return count == 0 ? 0 : _totalMicros.sum() / count;
+	}
+
+	/**
+	 * Upper bound of the given percentile (0 to 100) in microseconds.
+	 */
+	public long getPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int n = 0; n < BUCKETS; n++) {
+			counts[n] = _buckets.get(n);
+			total += counts[n];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int n = 0; n < BUCKETS; n++) {
+			seen += counts[n];
+			if (seen >= rank) {
+				return 1L << n;
+			}
+		}
+		return 1L << (BUCKETS - 1);
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.exception.KNXFormatException;
+
+/**
+ * Assignment of group addresses to KNX links for outgoing telegrams.
+ *
+ * <p>
+ * The configuration is a semicolon separated list of rules in the form <code>range:link</code>,
+ * where range is a single group address or two group addresses separated by <code>-</code>, and
+ * link is the number of the link in the list of gateways (starting with 1), e.g.
+ * </p>
+ *
+ * <pre>
+ * 1/0/0-1/7/255:1;2/0/0-2/7/255:2
+ * </pre>
+ *
+ * <p>
+ * The first matching rule wins. Group addresses without a matching rule are distributed over all
+ * links by their address, so that all telegrams to the same group address use the same link and
+ * keep their order.
+ * </p>
+ */
+public class LinkRoutes {
+	private static final Logger L = Logger.getLogger(LinkRoutes.class.getName());
+
+	private static final class Rule {
+		final int from;
+
+		final int to;
+
+		final int link;
+
+		Rule(int from, int to, int link) {
+			this.from = from;
+			this.to = to;
+			this.link = link;
+		}
+	}
+
+	private final List<Rule> _rules = new ArrayList<>();
+
+	/**
+	 * Creates {@link LinkRoutes} from the given configuration.
+	 *
+	 * @param links
+	 *        The number of configured links.
+	 */
+	public LinkRoutes(String config, int links) {
+		if (config == null) {
+			return;
+		}
+		for (String rule : config.split(";")) {
+			if (rule.trim().isEmpty()) {
+				continue;
+			}
+			int sep = rule.lastIndexOf(':');
+			if (sep < 0) {
+				throw new IllegalArgumentException("Invalid link route '" + rule + "', expected 'range:link'.");
+			}
+			String range = rule.substring(0, sep).trim();
+			int link;
+			try {
+				link = Integer.parseInt(rule.substring(sep + 1).trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid link number in route '" + rule + "'.", e);
+			}
+			if (link < 1 || link > links) {
+				throw new IllegalArgumentException("Link number in route '" + rule + "' must be between 1 and "
+						+ links + ".");
+			}
+			int dash = range.indexOf('-');
+			int from = parseAddress(range.substring(0, dash < 0 ? range.length() : dash), rule);
+			int to = dash < 0 ? from : parseAddress(range.substring(dash + 1), rule);
+			_rules.add(new Rule(Math.min(from, to), Math.max(from, to), link - 1));
+			L.config("Sending to " + range + " through link " + link);
+		}
+	}
+
+	private static int parseAddress(String address, String rule) {
+		try {
+			return new GroupAddress(address.trim()).getRawAddress();
+		} catch (KNXFormatException e) {
+			throw new IllegalArgumentException("Invalid group address in route '" + rule + "'.", e);
+		}
+	}
+
+	/**
+	 * Index of the link configured for the given group address, or <code>-1</code> if no rule
+	 * matches.
+	 */
+	public int getLink(int rawAddress) {
+		for (Rule rule : _rules) {
+			if (rawAddress >= rule.from && rawAddress <= rule.to) {
+				return rule.link;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -1,42 +1,130 @@
 package com.tellerulam.knx2mqtt;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.TimerTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
-import com.eclipsesource.json.JsonObject;
+import tuwien.auto.calimero.IndividualAddress;
 
 public class MQTTHandler {
 	private final Logger L = Logger.getLogger(getClass().getName());
 
-	public static MQTTHandler create(GroupAddressManager addressManager) throws MqttException {
-		MQTTHandler result = new MQTTHandler(addressManager);
+	public static MQTTHandler create(List<Site> sites) throws MqttException {
+		MQTTHandler result = new MQTTHandler(sites);
 		result.doInit();
 		return result;
 	}
 
-	private final GroupAddressManager _addressManager;
+	/**
+	 * The served sites, longest topic prefix first.
+	 */
+	private final Site[] _sites;
 
+	/**
+	 * Global topic prefix of the bridge, for the MQTT will and metrics.
+	 */
 	private final String topicPrefix;
 
-	private MQTTHandler(GroupAddressManager addressManager) {
-		_addressManager = addressManager;
+	/**
+	 * Whether a site publishes its connection state below the bridge prefix, which then also tells
+	 * that the bridge is running.
+	 */
+	private final boolean _bridgeIsSite;
+
+	private final StatusEncoder _encoder = new StatusEncoder();
+
+	/**
+	 * Whether publishing returns before the broker has acknowledged the message.
+	 */
+	private final boolean _async;
+
+	private final int _maxInflight;
+
+	/**
+	 * Permits for messages that may be in flight at the same time in asynchronous mode.
+	 */
+	private final Semaphore _inflight;
+
+	private MQTTHandler(List<Site> sites) {
 		String tp = System.getProperty(PropertyNames.KNX2MQTT_MQTT_TOPIC, "knx");
 		if (!tp.endsWith("/"))
 			tp += "/";
 		topicPrefix = tp;
+		boolean bridgeIsSite = false;
+		for (Site site : sites)
+			bridgeIsSite |= site.getTopicPrefix().equals(topicPrefix);
+		_bridgeIsSite = bridgeIsSite;
+		_sites = sites.toArray(new Site[sites.size()]);
+		// A site whose topic prefix starts with the prefix of another site must be matched first.
+		Arrays.sort(_sites, new Comparator<Site>() {
+			@Override
+			public int compare(Site s1, Site s2) {
+				return Integer.compare(s2.getTopicPrefix().length(), s1.getTopicPrefix().length());
+			}
+		});
+		_async = Boolean.getBoolean(PropertyNames.KNX2MQTT_MQTT_ASYNC);
+		_maxInflight = Math.max(1, Integer
+				.getInteger(PropertyNames.KNX2MQTT_MQTT_MAXINFLIGHT, MqttConnectOptions.MAX_INFLIGHT_DEFAULT)
+				.intValue());
+		_inflight = new Semaphore(_maxInflight);
 	}
 
-	private MqttClient mqttc;
+	private MqttAsyncClient mqttc;
+
+	/**
+	 * Tracks the completion of a single message published in asynchronous mode.
+	 */
+	private final class Delivery extends AtomicBoolean implements IMqttActionListener {
+		private static final long serialVersionUID = 1L;
+
+		private final String _topic;
+
+		private final long _receiveTime;
+
+		Delivery(String topic, long receiveTime) {
+			_topic = topic;
+			_receiveTime = receiveTime;
+		}
+
+		/**
+		 * Returns the in-flight permit of this message. Only the first call has an effect.
+		 */
+		void complete() {
+			if (compareAndSet(false, true)) {
+				_inflight.release();
+				if (_receiveTime != 0)
+					Metrics.MQTT_PUBLISH.recordSince(_receiveTime);
+			}
+		}
+
+		@Override
+		public void onSuccess(IMqttToken token) {
+			complete();
+		}
+
+		@Override
+		public void onFailure(IMqttToken token, Throwable ex) {
+			complete();
+			publishFailed("Error when publishing message to " + _topic, ex);
+		}
+	}
 
 	private void queueConnect() {
 		shouldBeConnected = false;
@@ -60,53 +148,98 @@ public class MQTTHandler {
 
 	private boolean shouldBeConnected;
 
-	private boolean _connected;
-
-	private void processSetGet(String namePart, MqttMessage msg, boolean set) {
+	private void processSetGet(Site site, String topic, int nameStart, MqttMessage msg, boolean set) {
 		if (msg.isRetained()) {
-			L.finer("Ignoring retained message " + msg + " to " + namePart);
+			L.finer("Ignoring retained message " + msg + " to " + topic);
+			return;
+		}
+		KNXLinks links = site.getLinks();
+		if (links == null) {
+			L.info("KNX links not yet started, ignoring message " + msg + " to " + topic);
 			return;
 		}
 		// Now translate the topic into a group address
-		GroupAddressInfo gai = _addressManager.getGAInfoForName(namePart);
+		GroupAddressManager addressManager = site.getAddressManager();
+		TopicTrie trie = addressManager.getNameTrie();
+		int[] group = trie.lookupSubtree(topic, nameStart);
+		if (group != null) {
+			if (set) {
+				L.warning("Wildcards are only supported for reading, ignoring message " + msg + " to " + topic);
+				return;
+			}
+			L.fine("Topic " + topic + " matches " + group.length + " group addresses");
+			for (int rawAddress : group) {
+				GroupAddressInfo gai = addressManager.getGAInfoForAddress(rawAddress);
+				links.doGroupRead(gai.getAddress(), null, gai);
+			}
+			return;
+		}
+
+		int rawAddress = trie.lookup(topic, nameStart);
+		GroupAddressInfo gai = rawAddress == TopicTrie.NONE ? null : addressManager.getGAInfoForAddress(rawAddress);
 		if (gai == null) {
-			L.warning("Unable to translate name " + namePart + " into a group address, ignoring message " + msg);
+			L.warning("Unable to translate name " + topic.substring(nameStart) + " into a group address, ignoring message "
+					+ msg);
 			return;
 		}
 		String address = gai.getAddress();
-		L.fine("Name " + namePart + " translates to GA " + address);
+		if (L.isLoggable(Level.FINE))
+			L.fine("Name " + gai.getName() + " translates to GA " + address);
 		String data = new String(msg.getPayload(), StandardCharsets.UTF_8);
 		if (set)
-			KNXConnector.doGroupWrite(address, data, gai);
+			links.doGroupWrite(address, data, gai);
 		else
-			KNXConnector.doGroupRead(address, data, gai);
+			links.doGroupRead(address, data, gai);
 	}
 
 	void processMessage(String topic, MqttMessage msg) {
-		L.fine("Received " + msg + " to " + topic);
-		topic = topic.substring(topicPrefix.length(), topic.length());
-		if (topic.startsWith("set/"))
-			processSetGet(topic.substring(4), msg, true);
-		else if (topic.startsWith("get/"))
-			processSetGet(topic.substring(4), msg, false);
+		if (L.isLoggable(Level.FINE))
+			L.fine("Received " + msg + " to " + topic);
+		Site site = siteFor(topic);
+		if (site == null) {
+			L.warning("Ignored message " + msg + " to foreign topic " + topic);
+			return;
+		}
+		int prefixLength = site.getTopicPrefix().length();
+		if (topic.startsWith("set/", prefixLength))
+			processSetGet(site, topic, prefixLength + 4, msg, true);
+		else if (topic.startsWith("get/", prefixLength))
+			processSetGet(site, topic, prefixLength + 4, msg, false);
 		else
-			L.warning("Ignored message " + msg + " to unknown topic " + topic);
+			L.warning("Ignored message " + msg + " to unknown topic " + topic.substring(prefixLength));
+	}
+
+	/**
+	 * The site with the longest topic prefix matching the given topic, or <code>null</code>.
+	 */
+	private Site siteFor(String topic) {
+		for (Site site : _sites) {
+			if (topic.startsWith(site.getTopicPrefix()))
+				return site;
+		}
+		return null;
 	}
 
 	private void doConnect() {
 		L.info("Connecting to MQTT broker " + mqttc.getServerURI() + " with CLIENTID=" + mqttc.getClientId()
-				+ " and TOPIC PREFIX=" + topicPrefix);
+				+ " and TOPIC PREFIX=" + topicPrefixes());
 
 		MqttConnectOptions copts = new MqttConnectOptions();
 		copts.setWill(topicPrefix + "connected", "0".getBytes(), 1, true);
 		copts.setCleanSession(true);
+		copts.setMaxInflight(_maxInflight);
 		try {
-			mqttc.connect(copts);
-			sendConnectionState();
-			L.info("Successfully connected to broker, subscribing to " + topicPrefix + "(set|get)/#");
+			mqttc.connect(copts).waitForCompletion();
+			if (!_bridgeIsSite)
+				sendBridgeState();
+			for (Site site : _sites)
+				sendConnectionState(site);
+			L.info("Successfully connected to broker, subscribing to " + topicPrefixes() + "(set|get)/#");
 			try {
-				mqttc.subscribe(topicPrefix + "set/#", 1);
-				mqttc.subscribe(topicPrefix + "get/#", 1);
+				for (Site site : _sites) {
+					mqttc.subscribe(site.getTopicPrefix() + "set/#", 1).waitForCompletion();
+					mqttc.subscribe(site.getTopicPrefix() + "get/#", 1).waitForCompletion();
+				}
 				shouldBeConnected = true;
 			} catch (MqttException mqe) {
 				L.log(Level.WARNING, "Error subscribing to topic hierarchy, check your configuration", mqe);
@@ -121,7 +254,9 @@ public class MQTTHandler {
 	private void doInit() throws MqttException {
 		String server = System.getProperty(PropertyNames.KNX2MQTT_MQTT_SERVER, "tcp://localhost:1883");
 		String clientID = System.getProperty(PropertyNames.KNX2MQTT_MQTT_CLIENTID, "knx2mqtt");
-		mqttc = new MqttClient(server, clientID, new MemoryPersistence());
+		mqttc = new MqttAsyncClient(server, clientID, new MemoryPersistence());
+		if (_async)
+			L.config("Publishing asynchronously with at most " + _maxInflight + " messages in flight");
 		mqttc.setCallback(new MqttCallback() {
 			@Override
 			public void messageArrived(String topic, MqttMessage msg) throws Exception {
@@ -134,7 +269,9 @@ public class MQTTHandler {
 
 			@Override
 			public void deliveryComplete(IMqttDeliveryToken token) {
-				/* Intentionally ignored */
+				Object context = token.getUserContext();
+				if (context instanceof Delivery)
+					((Delivery) context).complete();
 			}
 
 			@Override
@@ -145,46 +282,187 @@ public class MQTTHandler {
 		});
 		doConnect();
 		Main.t.schedule(new StateChecker(), 30 * 1000, 30 * 1000);
+		Metrics.register("mqtt.inflight", new Metrics.Gauge() {
+			@Override
+			public long get() {
+				return getInflightCount();
+			}
+		});
 	}
 
-	public void doPublish(String name, Object val, String src, String dpt, String textual, long updateTime,
-			long lastChange) {
-		JsonObject jso = new JsonObject();
-		jso.add("ts", updateTime).add("lc", lastChange).add("knx_src_addr", src).add("knx_dpt", dpt);
-		if (textual != null)
-			jso.add("knx_textual", textual);
-		if (val instanceof Integer)
-			jso.add("val", ((Integer) val).intValue());
-		else if (val instanceof Number)
-			jso.add("val", ((Number) val).doubleValue());
-		else
-			jso.add("val", val.toString());
-		String txtmsg = jso.toString();
-		MqttMessage msg = new MqttMessage(jso.toString().getBytes(StandardCharsets.UTF_8));
+	/**
+	 * The topic prefixes of all sites for logging, separated by <code>|</code>.
+	 */
+	private String topicPrefixes() {
+		if (_sites.length == 1)
+			return _sites[0].getTopicPrefix();
+		StringBuilder result = new StringBuilder("(");
+		for (Site site : _sites) {
+			if (result.length() > 1)
+				result.append('|');
+			result.append(site.getTopicPrefix());
+		}
+		return result.append(')').toString();
+	}
+
+	/**
+	 * Publishes a status message.
+	 *
+	 * <p>
+	 * Must only be called from the {@link StatusPublisher} thread, since the encoder is not
+	 * thread-safe.
+	 * </p>
+	 *
+	 * @param receiveTime
+	 *        {@link System#nanoTime()} when the telegram was received, or <code>0</code>, if the
+	 *        publish latency of this message is not measured.
+	 * @return Whether the message was handed to the broker, <code>false</code> if it was
+	 *         dropped.
+	 */
+	public boolean doPublish(StatusEncoder.Template template, DptDecoder.Kind kind, double number, String text,
+			IndividualAddress src, String textual, long updateTime, long lastChange, long receiveTime) {
+		byte[] payload = _encoder.encode(template, updateTime, lastChange, src, textual, kind, number, text);
+		MqttMessage msg = new MqttMessage(payload);
 		msg.setQos(0);
 		msg.setRetained(true);
+		String fullTopic = template.getTopic();
 		try {
-			String fullTopic = topicPrefix + "status/" + name;
-			mqttc.publish(fullTopic, msg);
-			L.finer("Published " + txtmsg + " to " + fullTopic);
+			if (!publish(fullTopic, msg, receiveTime)) {
+				publishFailed("No completion from broker within " + INFLIGHT_TIMEOUT + "ms, dropping message to "
+						+ fullTopic, null);
+				return false;
+			}
+			if (L.isLoggable(Level.FINER))
+				L.finer("Published " + new String(payload, StandardCharsets.UTF_8) + " to " + fullTopic);
+			return true;
 		} catch (MqttException e) {
-			L.log(Level.WARNING, "Error when publishing message " + txtmsg, e);
+			publishFailed("Error when publishing message " + new String(payload, StandardCharsets.UTF_8), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Interval in which publish errors are logged as warnings, further errors are logged as fine.
+	 */
+	private static final long PUBLISH_WARNING_INTERVAL = 60 * 1000;
+
+	private long _lastPublishWarning;
+
+	private int _suppressedPublishWarnings;
+
+	/**
+	 * Logs a failed publish, with at most one warning per {@link #PUBLISH_WARNING_INTERVAL}, so that
+	 * an unreachable broker does not flood the log.
+	 */
+	private synchronized void publishFailed(String message, Throwable cause) {
+		long now = System.currentTimeMillis();
+		if (now - _lastPublishWarning < PUBLISH_WARNING_INTERVAL) {
+			_suppressedPublishWarnings++;
+			L.log(Level.FINE, message, cause);
+			return;
 		}
+		if (_suppressedPublishWarnings > 0) {
+			message += " (" + _suppressedPublishWarnings + " more errors since the last warning)";
+			_suppressedPublishWarnings = 0;
+		}
+		_lastPublishWarning = now;
+		L.log(Level.WARNING, message, cause);
 	}
 
-	private void sendConnectionState() {
+	/**
+	 * Publishes the given message.
+	 *
+	 * <p>
+	 * In synchronous mode, this waits for the broker's acknowledgement. In asynchronous mode, this
+	 * only waits for a free slot in the in-flight window and returns immediately afterwards.
+	 * </p>
+	 *
+	 * @return <code>false</code>, if the message was dropped, since no slot in the in-flight
+	 *         window became free in time.
+	 */
+	private boolean publish(String topic, MqttMessage msg, long receiveTime) throws MqttException {
+		if (!_async) {
+			mqttc.publish(topic, msg).waitForCompletion();
+			if (receiveTime != 0)
+				Metrics.MQTT_PUBLISH.recordSince(receiveTime);
+			return true;
+		}
+
 		try {
-			mqttc.publish(topicPrefix + "connected", (_connected ? "2" : "1").getBytes(), 1,
-					true);
+			if (!_inflight.tryAcquire(INFLIGHT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		Delivery delivery = new Delivery(topic, receiveTime);
+		try {
+			mqttc.publish(topic, msg, delivery, delivery);
+		} catch (MqttException | RuntimeException e) {
+			delivery.complete();
+			throw e;
+		}
+		return true;
+	}
+
+	private static final long INFLIGHT_TIMEOUT = 30 * 1000;
+
+	/**
+	 * Number of messages published in asynchronous mode that have not yet been completed.
+	 */
+	public int getInflightCount() {
+		return _maxInflight - _inflight.availablePermits();
+	}
+
+	/**
+	 * Publishes that the bridge is running to <code>prefix/connected</code>, the will resets it to 0.
+	 */
+	private void sendBridgeState() {
+		try {
+			MqttMessage msg = new MqttMessage("1".getBytes());
+			msg.setQos(1);
+			msg.setRetained(true);
+			publish(topicPrefix + "connected", msg, 0);
 		} catch (MqttException e) {
 			/* Ignore */
 		}
+	}
 
+	private void sendConnectionState(Site site) {
+		try {
+			MqttMessage msg = new MqttMessage((site.isKNXConnected() ? "2" : "1").getBytes());
+			msg.setQos(1);
+			msg.setRetained(true);
+			publish(site.getTopicPrefix() + "connected", msg, 0);
+		} catch (MqttException e) {
+			/* Ignore */
+		}
+
+	}
+
+	/**
+	 * Publishes a metrics snapshot to <code>prefix/$metrics</code>, see {@link Metrics}.
+	 */
+	void publishMetrics(byte[] payload) {
+		if (!mqttc.isConnected())
+			return;
+		MqttMessage msg = new MqttMessage(payload);
+		msg.setQos(0);
+		msg.setRetained(false);
+		try {
+			publish(topicPrefix + "$metrics", msg, 0);
+		} catch (MqttException e) {
+			L.log(Level.FINE, "Error when publishing metrics", e);
+		}
 	}
 
-	public void doSetKNXConnectionState(boolean connected) {
-		_connected = connected;
-		sendConnectionState();
+	/**
+	 * Publishes whether at least one KNX link of the given site is open.
+	 */
+	public void doSetKNXConnectionState(Site site, boolean connected) {
+		site.setKNXConnected(connected);
+		sendConnectionState(site);
 	}
 
 }
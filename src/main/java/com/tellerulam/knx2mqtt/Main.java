@@ -51,39 +51,59 @@ public class Main {
 		Logger.getLogger(Main.class.getName())
 				.info("knx2mqtt V" + getVersion() + " (C) 2015 Oliver Wagner <owagner@tellerulam.com>");
 		SyslogHandler.readConfig();
-		GroupAddressManager addressManager = new GroupAddressManager();
-		loadEtsProject(addressManager);
-		loadAddressTable(addressManager);
-		MQTTHandler mqtt = MQTTHandler.create(addressManager);
-		KNXConnector.launch(addressManager, mqtt);
+		List<Site> sites = Site.fromConfig();
+		for (Site site : sites) {
+			loadEtsProject(site);
+			loadAddressTable(site);
+			site.setStateStore(openStateStore(site));
+		}
+		MQTTHandler mqtt = MQTTHandler.create(sites);
+		StatusPublisher publisher = StatusPublisher.launch(mqtt);
+		for (Site site : sites)
+			KNXLinks.launch(site, mqtt, publisher);
+		Metrics.launch(mqtt);
+		for (Site site : sites)
+			WarmUp.launch(site);
+	}
+
+	private static StateStore openStateStore(Site site) {
+		String fileName = getEtsProjectFileName(site);
+		if (fileName == null) {
+			fileName = getAddressTableFileName(site);
+		}
+		StateStore result = StateStore.fromConfig(site, fileName);
+		if (result != null) {
+			result.restore(site.getAddressManager());
+		}
+		return result;
 	}
 
-	private static void loadAddressTable(GroupAddressManager addressManager) {
-		String fileName = getAddressTableFileName();
+	private static void loadAddressTable(Site site) {
+		String fileName = getAddressTableFileName(site);
 		if (fileName == null) {
-			L.config("No Group Address table specified");
+			L.config(site.qualify("No Group Address table specified"));
 		} else {
-			new AddressTableLoader(addressManager).load(fileName);
+			new AddressTableLoader(site.getAddressManager()).load(fileName);
 		}
 	}
 
-	private static String getAddressTableFileName() {
-		return System.getProperty(PropertyNames.KNX2MQTT_KNX_GROUPADDRESSTABLE);
+	private static String getAddressTableFileName(Site site) {
+		return site.getProperty(PropertyNames.KNX2MQTT_KNX_GROUPADDRESSTABLE);
 	}
 
-	private static void loadEtsProject(GroupAddressManager addressManager) {
-		String fileName = getEtsProjectFileName();
+	private static void loadEtsProject(Site site) {
+		String fileName = getEtsProjectFileName(site);
 		if (fileName == null) {
-			L.config("No ETS4/ETS5 project file specified");
+			L.config(site.qualify("No ETS4/ETS5 project file specified"));
 		} else {
-			EtsLoader.load(addressManager, fileName);
+			EtsLoader.load(site.getAddressManager(), fileName);
 		}
 	}
 
-	private static String getEtsProjectFileName() {
-		String fileName = System.getProperty(PropertyNames.KNX2MQTT_KNX_ETS5PROJECTFILE);
+	private static String getEtsProjectFileName(Site site) {
+		String fileName = site.getProperty(PropertyNames.KNX2MQTT_KNX_ETS5PROJECTFILE);
 		if (fileName == null) {
-			fileName = System.getProperty(PropertyNames.KNX2MQTT_KNX_ETS4PROJECTFILE);
+			fileName = site.getProperty(PropertyNames.KNX2MQTT_KNX_ETS4PROJECTFILE);
 		}
 		return fileName;
 	}
@@ -0,0 +1,258 @@
+package com.tellerulam.knx2mqtt;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.eclipsesource.json.JsonObject;
+
+/**
+ * Counters and latency histograms of the bridge's hot paths.
+ *
+ * <p>
+ * Counters are updated without locking from the KNX and MQTT threads. Snapshots are periodically
+ * published as a single JSON object to the topic <code>prefix/$metrics</code> and are available
+ * through JMX, see {@link MetricsMXBean}. All latencies are in microseconds.
+ * </p>
+ */
+public final class Metrics {
+	static final Logger L = Logger.getLogger(Metrics.class.getName());
+
+	/**
+	 * A value that is sampled when a snapshot is taken, e.g. a queue depth.
+	 */
+	interface Gauge {
+		/**
+		 * The current value.
+		 */
+		long get();
+	}
+
+	private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+
+	private static final Map<String, Gauge> GAUGES = new ConcurrentSkipListMap<>();
+
+	private static final Map<String, LatencyHistogram> LATENCIES = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Telegrams received for group addresses with a known name and DPT.
+	 */
+	static final LongAdder KNX_IN_KNOWN = counter("knx.in.known");
+
+	/**
+	 * Telegrams received for unknown group addresses.
+	 */
+	static final LongAdder KNX_IN_UNKNOWN = counter("knx.in.unknown");
+
+	/**
+	 * Received telegrams whose ASDU could not be converted.
+	 */
+	static final LongAdder KNX_IN_ERRORS = counter("knx.in.errors");
+
+	/**
+	 * Copies of telegrams received through more than one link, and echoes of own telegrams.
+	 */
+	static final LongAdder KNX_IN_DUPLICATES = counter("knx.in.duplicates");
+
+	/**
+	 * Group writes sent to the bus.
+	 */
+	static final LongAdder KNX_OUT_WRITES = counter("knx.out.writes");
+
+	/**
+	 * Group reads sent to the bus.
+	 */
+	static final LongAdder KNX_OUT_READS = counter("knx.out.reads");
+
+	/**
+	 * Telegrams that could not be sent to the bus.
+	 */
+	static final LongAdder KNX_OUT_ERRORS = counter("knx.out.errors");
+
+	/**
+	 * Values from MQTT that could not be converted into a group write.
+	 */
+	static final LongAdder MQTT_SET_ERRORS = counter("mqtt.set.errors");
+
+	/**
+	 * MQTT get requests answered from the last received value instead of a group read.
+	 */
+	static final LongAdder MQTT_GET_CACHED = counter("mqtt.get.cached");
+
+	/**
+	 * Time from receiving a telegram of a known group address until its value is translated.
+	 */
+	static final LatencyHistogram KNX_TRANSLATE = latency("knx.translate");
+
+	/**
+	 * Time from receiving a telegram until its status message is completed by the broker.
+	 */
+	static final LatencyHistogram MQTT_PUBLISH = latency("mqtt.publish");
+
+	/**
+	 * Time from an MQTT set until the group write is confirmed by the bus.
+	 */
+	static final LatencyHistogram KNX_WRITE = latency("knx.write");
+
+	/**
+	 * Time from losing the KNX link until it is re-established.
+	 */
+	static final LatencyHistogram KNX_RECONNECT = latency("knx.reconnect");
+
+	/**
+	 * Upper bound (exclusive) of DPT main types counted per family.
+	 */
+	private static final int MAIN_TYPES = 1000;
+
+	private static final AtomicLongArray IN_BY_MAIN_TYPE = new AtomicLongArray(MAIN_TYPES);
+
+	private static final AtomicLongArray OUT_BY_MAIN_TYPE = new AtomicLongArray(MAIN_TYPES);
+
+	private Metrics() {
+		// Static utility.
+	}
+
+	private static LongAdder counter(String name) {
+		LongAdder result = new LongAdder();
+		COUNTERS.put(name, result);
+		return result;
+	}
+
+	private static LatencyHistogram latency(String name) {
+		LatencyHistogram result = new LatencyHistogram();
+		LATENCIES.put(name, result);
+		return result;
+	}
+
+	/**
+	 * Registers a gauge that is sampled with each snapshot, replacing a gauge of the same name.
+	 */
+	static void register(String name, Gauge gauge) {
+		GAUGES.put(name, gauge);
+	}
+
+	/**
+	 * Counts a received telegram of the given DPT main type, see {@link DptCodec#getMainType()}.
+	 */
+	static void countIn(int mainType) {
+		if (mainType >= 0 && mainType < MAIN_TYPES)
+			IN_BY_MAIN_TYPE.incrementAndGet(mainType);
+	}
+
+	/**
+	 * Counts a sent group write of the given DPT main type, see {@link DptCodec#getMainType()}.
+	 */
+	static void countOut(int mainType) {
+		if (mainType >= 0 && mainType < MAIN_TYPES)
+			OUT_BY_MAIN_TYPE.incrementAndGet(mainType);
+	}
+
+	/**
+	 * Current values of all counters and gauges by name. Per DPT family counters are only
+	 * included once they are non-zero.
+	 */
+	static Map<String, Long> getCounters() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (Entry<String, LongAdder> entry : COUNTERS.entrySet()) {
+			result.put(entry.getKey(), Long.valueOf(entry.getValue().sum()));
+		}
+		addByMainType(result, "knx.in.dpt.", IN_BY_MAIN_TYPE);
+		addByMainType(result, "knx.out.dpt.", OUT_BY_MAIN_TYPE);
+		for (Entry<String, Gauge> entry : GAUGES.entrySet()) {
+			result.put(entry.getKey(), Long.valueOf(entry.getValue().get()));
+		}
+		return result;
+	}
+
+	private static void addByMainType(Map<String, Long> result, String prefix, AtomicLongArray counts) {
+		for (int n = 0; n < MAIN_TYPES; n++) {
+			long count = counts.get(n);
+			if (count != 0)
+				result.put(prefix + n, Long.valueOf(count));
+		}
+	}
+
+	/**
+	 * Count, average and percentiles of all latency histograms, see
+	 * {@link MetricsMXBean#getLatencies()}.
+	 */
+	static Map<String, Long> getLatencies() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (Entry<String, LatencyHistogram> entry : LATENCIES.entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			String name = entry.getKey();
+			result.put(name + ".count", Long.valueOf(histogram.getCount()));
+			result.put(name + ".avg", Long.valueOf(histogram.getAverage()));
+			result.put(name + ".p50", Long.valueOf(histogram.getPercentile(50)));
+			result.put(name + ".p99", Long.valueOf(histogram.getPercentile(99)));
+		}
+		return result;
+	}
+
+	/**
+	 * A snapshot of all metrics as JSON object.
+	 */
+	static byte[] createSnapshot() {
+		JsonObject result = new JsonObject();
+		result.add("ts", System.currentTimeMillis());
+		for (Entry<String, Long> entry : getCounters().entrySet()) {
+			result.add(entry.getKey(), entry.getValue().longValue());
+		}
+		for (Entry<String, Long> entry : getLatencies().entrySet()) {
+			result.add(entry.getKey(), entry.getValue().longValue());
+		}
+		return result.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Registers the JMX bean and starts publishing snapshots through the given handler.
+	 */
+	public static void launch(final MQTTHandler mqtt) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(),
+					new ObjectName("com.tellerulam.knx2mqtt:type=Metrics"));
+		} catch (JMException e) {
+			L.log(Level.WARNING, "Unable to register metrics with JMX", e);
+		}
+
+		long interval = Long.getLong(PropertyNames.KNX2MQTT_MQTT_METRICSINTERVAL, 60 * 1000).longValue();
+		if (interval <= 0) {
+			L.config("Not publishing metrics");
+			return;
+		}
+		Main.t.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				mqtt.publishMetrics(createSnapshot());
+			}
+		}, interval, interval);
+	}
+
+	private static final class MetricsBean implements MetricsMXBean {
+		MetricsBean() {
+			super();
+		}
+
+		@Override
+		public Map<String, Long> getCounters() {
+			return Metrics.getCounters();
+		}
+
+		@Override
+		public Map<String, Long> getLatencies() {
+			return Metrics.getLatencies();
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link Metrics}, registered as <code>com.tellerulam.knx2mqtt:type=Metrics</code>.
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * Current values of all counters and gauges by name.
+	 */
+	Map<String, Long> getCounters();
+
+	/**
+	 * Count, average and percentiles of all latency histograms in microseconds, by histogram name
+	 * with the suffixes <code>.count</code>, <code>.avg</code>, <code>.p50</code> and
+	 * <code>.p99</code>.
+	 */
+	Map<String, Long> getLatencies();
+
+}
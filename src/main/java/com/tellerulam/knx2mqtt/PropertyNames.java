@@ -7,10 +7,16 @@ public class PropertyNames {
 
 	static final String JAVA_UTIL_LOGGING_CONFIG_FILE = "java.util.logging.config.file";
 
+	static final String KNX2MQTT_SITES = "knx2mqtt.sites";
+
 	static final String KNX2MQTT_KNX_ETS4PROJECTFILE = "knx2mqtt.knx.ets4projectfile";
 
 	static final String KNX2MQTT_KNX_ETS5PROJECTFILE = "knx2mqtt.knx.ets5projectfile";
 
+	static final String KNX2MQTT_KNX_CACHEFORMAT = "knx2mqtt.knx.cacheformat";
+
+	static final String KNX2MQTT_KNX_IMPORTTHREADS = "knx2mqtt.knx.importthreads";
+
 	static final String KNX2MQTT_KNX_TYPE = "knx2mqtt.knx.type";
 
 	static final String KNX2MQTT_KNX_IP = "knx2mqtt.knx.ip";
@@ -19,6 +25,28 @@ public class PropertyNames {
 
 	static final String KNX2MQTT_KNX_PORT = "knx2mqtt.knx.port";
 
+	static final String KNX2MQTT_KNX_LINKROUTES = "knx2mqtt.knx.linkroutes";
+
+	static final String KNX2MQTT_KNX_DEDUPWINDOW = "knx2mqtt.knx.dedupwindow";
+
+	static final String KNX2MQTT_KNX_READCACHETTL = "knx2mqtt.knx.readcachettl";
+
+	static final String KNX2MQTT_KNX_RECONNECT_MIN = "knx2mqtt.knx.reconnect.min";
+
+	static final String KNX2MQTT_KNX_RECONNECT_MAX = "knx2mqtt.knx.reconnect.max";
+
+	static final String KNX2MQTT_KNX_SENDRATE = "knx2mqtt.knx.sendrate";
+
+	static final String KNX2MQTT_KNX_SENDCLASSES = "knx2mqtt.knx.sendclasses";
+
+	static final String KNX2MQTT_KNX_WARMUP = "knx2mqtt.knx.warmup";
+
+	static final String KNX2MQTT_KNX_WARMUP_RATE = "knx2mqtt.knx.warmup.rate";
+
+	static final String KNX2MQTT_KNX_WARMUP_BUDGET = "knx2mqtt.knx.warmup.budget";
+
+	static final String KNX2MQTT_KNX_STATEFILE = "knx2mqtt.knx.statefile";
+
 	static final String KNX2MQTT_KNX_GROUPADDRESSTABLE = "knx2mqtt.knx.groupaddresstable";
 
 	static final String KNX2MQTT_MQTT_TOPIC = "knx2mqtt.mqtt.topic";
@@ -27,4 +55,18 @@ public class PropertyNames {
 
 	static final String KNX2MQTT_MQTT_CLIENTID = "knx2mqtt.mqtt.clientid";
 
+	static final String KNX2MQTT_MQTT_ASYNC = "knx2mqtt.mqtt.async";
+
+	static final String KNX2MQTT_MQTT_MAXINFLIGHT = "knx2mqtt.mqtt.maxinflight";
+
+	static final String KNX2MQTT_MQTT_PUBLISHPOLICY = "knx2mqtt.mqtt.publishpolicy";
+
+	static final String KNX2MQTT_MQTT_QUEUESIZE = "knx2mqtt.mqtt.queuesize";
+
+	static final String KNX2MQTT_MQTT_BATCHSIZE = "knx2mqtt.mqtt.batchsize";
+
+	static final String KNX2MQTT_MQTT_QUEUETIMEOUT = "knx2mqtt.mqtt.queuetimeout";
+
+	static final String KNX2MQTT_MQTT_METRICSINTERVAL = "knx2mqtt.mqtt.metricsinterval";
+
 }
@@ -0,0 +1,133 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.TimerTask;
+
+/**
+ * Applies a {@link PublishPolicy} to the status updates of a single group address.
+ *
+ * <p>
+ * Updates may be submitted from the KNX receive threads and answers from the MQTT thread while a
+ * delayed update is flushed from the timer thread, therefore all state is guarded by the filter's
+ * monitor.
+ * </p>
+ */
+public class PublishFilter {
+
+	/**
+	 * Stateless filter publishing all updates.
+	 */
+	static final PublishFilter ALL = new PublishFilter(PublishPolicy.ALL);
+
+	private final PublishPolicy _policy;
+
+	private boolean _hasPublished;
+
+	private DptDecoder.Kind _lastKind;
+
+	private double _lastNumber;
+
+	private String _lastText;
+
+	private long _lastPublishTime;
+
+	/**
+	 * The latest update suppressed by the minimum interval, published when the interval has passed.
+	 */
+	private StatusPublisher.Event _pending;
+
+	private boolean _flushScheduled;
+
+	/**
+	 * Creates a {@link PublishFilter}.
+	 */
+	PublishFilter(PublishPolicy policy) {
+		_policy = policy;
+	}
+
+	/**
+	 * The applied policy.
+	 */
+	public PublishPolicy getPolicy() {
+		return _policy;
+	}
+
+	/**
+	 * Publishes the given update, if allowed by the policy.
+	 */
+	public void submit(StatusPublisher.Event event, StatusPublisher publisher) {
+		if (_policy == PublishPolicy.ALL) {
+			publisher.publish(event);
+			return;
+		}
+
+		synchronized (this) {
+			if (_hasPublished && !_policy.isSignificant(event.kind, event.number, event.text, _lastKind, _lastNumber,
+					_lastText)) {
+				// The value is back at (or still near) the published one, nothing to flush anymore.
+				_pending = null;
+				return;
+			}
+			long delay = _hasPublished ? _lastPublishTime + _policy.getMinInterval() - event.updateTime : 0;
+			if (delay > 0) {
+				_pending = event;
+				if (!_flushScheduled) {
+					_flushScheduled = true;
+					Main.t.schedule(new Flush(publisher), delay);
+				}
+				return;
+			}
+			// A flush that is still scheduled must not publish an older update after this one.
+			_pending = null;
+			markPublished(event);
+		}
+		publisher.publish(event);
+	}
+
+	/**
+	 * Publishes the given update regardless of the policy, since it answers a read request. A
+	 * delayed older update is discarded, so that it cannot overwrite the answer.
+	 */
+	public void submitAnswer(StatusPublisher.Event event, StatusPublisher publisher) {
+		if (_policy != PublishPolicy.ALL) {
+			synchronized (this) {
+				_pending = null;
+				markPublished(event);
+			}
+		}
+		publisher.publish(event);
+	}
+
+	private void markPublished(StatusPublisher.Event event) {
+		_hasPublished = true;
+		_lastKind = event.kind;
+		_lastNumber = event.number;
+		_lastText = event.text;
+		_lastPublishTime = event.updateTime;
+	}
+
+	private class Flush extends TimerTask {
+		private final StatusPublisher _publisher;
+
+		Flush(StatusPublisher publisher) {
+			_publisher = publisher;
+		}
+
+		@Override
+		public void run() {
+			StatusPublisher.Event event;
+			synchronized (PublishFilter.this) {
+				_flushScheduled = false;
+				event = _pending;
+				if (event == null) {
+					return;
+				}
+				_pending = null;
+				markPublished(event);
+				// Measure the next interval from now, the event itself may be older.
+				_lastPublishTime = System.currentTimeMillis();
+			}
+			_publisher.publish(event.deferred());
+		}
+	}
+
+}
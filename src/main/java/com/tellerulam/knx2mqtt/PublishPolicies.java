@@ -0,0 +1,121 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Configured {@link PublishPolicy}s by group name prefix or DPT main type.
+ *
+ * <p>
+ * The configuration is a semicolon separated list of rules in the form
+ * <code>selector:policy</code>. The selector is either a prefix of the group names, or a DPT
+ * main type preceded by <code>@</code>, e.g.
+ * </p>
+ *
+ * <pre>
+ * Heizung/:change,deadband=0.2,interval=60000;@13:deadband=1%;@14:deadband=1%
+ * </pre>
+ *
+ * <p>
+ * The rule with the longest matching name prefix wins. Rules for DPT main types only apply, if no
+ * name prefix matches. Group addresses without a matching rule publish all updates.
+ * </p>
+ */
+public class PublishPolicies {
+	private static final Logger L = Logger.getLogger(PublishPolicies.class.getName());
+
+	private static final class Rule {
+		final String prefix;
+
+		final PublishPolicy policy;
+
+		Rule(String prefix, PublishPolicy policy) {
+			this.prefix = prefix;
+			this.policy = policy;
+		}
+	}
+
+	/**
+	 * Rules by name prefix, longest prefix first.
+	 */
+	private final List<Rule> _nameRules = new ArrayList<>();
+
+	private final Map<Integer, PublishPolicy> _dptRules = new HashMap<>();
+
+	/**
+	 * Creates {@link PublishPolicies} from the given configuration.
+	 */
+	public PublishPolicies(String config) {
+		if (config != null) {
+			for (String rule : config.split(";")) {
+				if (rule.trim().isEmpty()) {
+					continue;
+				}
+				int sep = rule.indexOf(':');
+				if (sep < 0) {
+					throw new IllegalArgumentException("Invalid publish policy rule '" + rule
+							+ "', expected 'selector:policy'.");
+				}
+				String selector = rule.substring(0, sep).trim();
+				PublishPolicy policy = PublishPolicy.parse(rule.substring(sep + 1));
+				if (selector.startsWith("@")) {
+					_dptRules.put(Integer.valueOf(selector.substring(1)), policy);
+				} else {
+					_nameRules.add(new Rule(selector, policy));
+				}
+				L.config("Publish policy for '" + selector + "': " + policy);
+			}
+		}
+		Collections.sort(_nameRules, new Comparator<Rule>() {
+			@Override
+			public int compare(Rule r1, Rule r2) {
+				return Integer.compare(r2.prefix.length(), r1.prefix.length());
+			}
+		});
+	}
+
+	/**
+	 * The policy for the given group address.
+	 */
+	public PublishPolicy getPolicy(GroupAddressInfo gai) {
+		String name = gai.getName();
+		for (Rule rule : _nameRules) {
+			if (name.startsWith(rule.prefix)) {
+				return rule.policy;
+			}
+		}
+		if (!_dptRules.isEmpty() && gai.getDpt() != null) {
+			String dpt = gai.getDpt();
+			int sep = dpt.indexOf('.');
+			try {
+				PublishPolicy policy = _dptRules.get(Integer.valueOf(sep < 0 ? dpt : dpt.substring(0, sep)));
+				if (policy != null) {
+					return policy;
+				}
+			} catch (NumberFormatException e) {
+				// Not a regular DPT, no rule applies.
+			}
+		}
+		return PublishPolicy.ALL;
+	}
+
+	/**
+	 * The {@link PublishFilter} for the given group address, created on first use. Callers must
+	 * synchronize on the group address.
+	 */
+	public PublishFilter getFilter(GroupAddressInfo gai) {
+		PublishFilter result = gai.publishFilter;
+		if (result == null) {
+			PublishPolicy policy = getPolicy(gai);
+			result = policy == PublishPolicy.ALL ? PublishFilter.ALL : new PublishFilter(policy);
+			gai.publishFilter = result;
+		}
+		return result;
+	}
+
+}
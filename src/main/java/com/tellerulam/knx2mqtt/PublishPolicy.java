@@ -0,0 +1,130 @@
+package com.tellerulam.knx2mqtt;
+
+/**
+ * Decides which status updates of a group address are worth publishing.
+ *
+ * <p>
+ * A policy is specified as comma separated list of options:
+ * </p>
+ * <ul>
+ * <li><code>change</code> - Only publish updates that change the value.</li>
+ * <li><code>deadband=0.5</code> - Only publish numeric updates that differ by at least the given
+ * amount from the last published value. Implies <code>change</code>.</li>
+ * <li><code>deadband=2%</code> - Same as above, but relative to the last published value.</li>
+ * <li><code>interval=10000</code> - Publish at most once in the given number of milliseconds.
+ * The latest suppressed update is published when the interval has passed.</li>
+ * </ul>
+ */
+public final class PublishPolicy {
+
+	/**
+	 * Policy publishing all updates.
+	 */
+	public static final PublishPolicy ALL = new PublishPolicy(false, 0, 0, 0);
+
+	private final boolean _changeOnly;
+
+	private final double _absoluteDeadband;
+
+	private final double _relativeDeadband;
+
+	private final long _minInterval;
+
+	private PublishPolicy(boolean changeOnly, double absoluteDeadband, double relativeDeadband, long minInterval) {
+		_changeOnly = changeOnly || absoluteDeadband > 0 || relativeDeadband > 0;
+		_absoluteDeadband = absoluteDeadband;
+		_relativeDeadband = relativeDeadband;
+		_minInterval = minInterval;
+	}
+
+	/**
+	 * Parses a policy specification, e.g. <code>change,deadband=0.2,interval=60000</code>.
+	 */
+	public static PublishPolicy parse(String spec) {
+		boolean changeOnly = false;
+		double absoluteDeadband = 0;
+		double relativeDeadband = 0;
+		long minInterval = 0;
+		for (String option : spec.split(",")) {
+			option = option.trim();
+			if (option.isEmpty() || "all".equals(option)) {
+				continue;
+			}
+			int sep = option.indexOf('=');
+			String key = sep < 0 ? option : option.substring(0, sep).trim();
+			String value = sep < 0 ? null : option.substring(sep + 1).trim();
+			try {
+				switch (key) {
+				case "change":
+					changeOnly = true;
+					break;
+				case "deadband":
+					if (value.endsWith("%"))
+						relativeDeadband = Double.parseDouble(value.substring(0, value.length() - 1)) / 100;
+					else
+						absoluteDeadband = Double.parseDouble(value);
+					break;
+				case "interval":
+					minInterval = Long.parseLong(value);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown publish policy option '" + option + "'.");
+				}
+			} catch (NumberFormatException | NullPointerException e) {
+				throw new IllegalArgumentException("Invalid publish policy option '" + option + "'.", e);
+			}
+		}
+		if (!changeOnly && absoluteDeadband == 0 && relativeDeadband == 0 && minInterval == 0) {
+			return ALL;
+		}
+		return new PublishPolicy(changeOnly, absoluteDeadband, relativeDeadband, minInterval);
+	}
+
+	/**
+	 * Whether only changed values are published.
+	 */
+	public boolean isChangeOnly() {
+		return _changeOnly;
+	}
+
+	/**
+	 * Minimum time in milliseconds between two published updates.
+	 */
+	public long getMinInterval() {
+		return _minInterval;
+	}
+
+	/**
+	 * Whether the given value is significantly different from the last published value.
+	 */
+	public boolean isSignificant(DptDecoder.Kind kind, double number, String text, DptDecoder.Kind lastKind,
+			double lastNumber, String lastText) {
+		if (!_changeOnly) {
+			return true;
+		}
+		if (kind != lastKind) {
+			return true;
+		}
+		if (kind == DptDecoder.Kind.TEXT) {
+			return !text.equals(lastText);
+		}
+		double delta = Math.abs(number - lastNumber);
+		if (delta == 0) {
+			return false;
+		}
+		if (delta < _absoluteDeadband) {
+			return false;
+		}
+		if (delta < _relativeDeadband * Math.abs(lastNumber)) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "PublishPolicy(change=" + _changeOnly + ", deadband=" + _absoluteDeadband + "/"
+				+ (_relativeDeadband * 100) + "%, interval=" + _minInterval + ")";
+	}
+
+}
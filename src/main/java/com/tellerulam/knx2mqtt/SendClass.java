@@ -0,0 +1,48 @@
+package com.tellerulam.knx2mqtt;
+
+import tuwien.auto.calimero.Priority;
+
+/**
+ * Scheduling class of an outgoing telegram, see {@link KNXSendScheduler}.
+ *
+ * <p>
+ * Telegrams of a higher class are always sent before pending telegrams of a lower class. The class
+ * also determines the KNX telegram priority.
+ * </p>
+ */
+public enum SendClass {
+
+	/**
+	 * Alarms and other time critical telegrams, sent with KNX priority "urgent".
+	 */
+	URGENT(Priority.URGENT),
+
+	/**
+	 * Writes caused by user interaction, e.g. switching lights or moving blinds. Default for writes.
+	 */
+	INTERACTIVE(Priority.NORMAL),
+
+	/**
+	 * Default for read requests.
+	 */
+	NORMAL(Priority.LOW),
+
+	/**
+	 * Bulk reads and cyclic refreshes, only sent when nothing else is pending.
+	 */
+	BULK(Priority.LOW);
+
+	private final Priority _priority;
+
+	private SendClass(Priority priority) {
+		_priority = priority;
+	}
+
+	/**
+	 * The KNX priority of telegrams in this class.
+	 */
+	public Priority getPriority() {
+		return _priority;
+	}
+
+}
@@ -0,0 +1,256 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A KNX installation served by this process.
+ *
+ * <p>
+ * Each site has its own group addresses, KNX links, state file and topic prefix, while the MQTT
+ * connection and the {@link StatusPublisher} are shared by all sites. Without further
+ * configuration, there is a single unnamed site configured by the global options.
+ * </p>
+ *
+ * <p>
+ * Several sites are configured by a comma separated list of names in <code>knx2mqtt.sites</code>.
+ * Options of a site are looked up with the prefix <code>knx2mqtt.site.&lt;name&gt;.</code> first,
+ * and fall back to the global option, e.g. <code>knx2mqtt.site.office.knx.ip</code> before
+ * <code>knx2mqtt.knx.ip</code>. The topic prefix of a named site defaults to the global topic
+ * prefix followed by the site name.
+ * </p>
+ */
+public class Site {
+	private static final Logger L = Logger.getLogger(Site.class.getName());
+
+	private static final String PREFIX = "knx2mqtt.";
+
+	private static final String SITE_PREFIX = PREFIX + "site.";
+
+	/**
+	 * The site name, <code>null</code> for the single unnamed site.
+	 */
+	private final String _name;
+
+	private final String _topicPrefix;
+
+	private final GroupAddressManager _addressManager = new GroupAddressManager();
+
+	private final PublishPolicies _publishPolicies;
+
+	private StateStore _stateStore;
+
+	private volatile KNXLinks _links;
+
+	/**
+	 * Whether at least one KNX link of this site is open.
+	 */
+	private volatile boolean _knxConnected;
+
+	/**
+	 * Creates a {@link Site}.
+	 *
+	 * @param name
+	 *        The site name, <code>null</code> for the single unnamed site.
+	 */
+	public Site(String name) {
+		_name = name;
+		String tp = getOwnProperty(PropertyNames.KNX2MQTT_MQTT_TOPIC);
+		if (tp == null) {
+			tp = System.getProperty(PropertyNames.KNX2MQTT_MQTT_TOPIC, "knx");
+			if (name != null) {
+				if (!tp.endsWith("/"))
+					tp += "/";
+				tp += name;
+			}
+		}
+		if (!tp.endsWith("/"))
+			tp += "/";
+		_topicPrefix = tp;
+		_publishPolicies = new PublishPolicies(getProperty(PropertyNames.KNX2MQTT_MQTT_PUBLISHPOLICY));
+	}
+
+	/**
+	 * Creates the sites configured in the system properties.
+	 */
+	public static List<Site> fromConfig() {
+		List<Site> result = new ArrayList<>();
+		String names = System.getProperty(PropertyNames.KNX2MQTT_SITES);
+		if (names != null) {
+			for (String name : names.split(",")) {
+				name = name.trim();
+				if (!name.isEmpty()) {
+					result.add(new Site(name));
+				}
+			}
+		}
+		if (result.isEmpty()) {
+			result.add(new Site(null));
+		} else {
+			L.config("Serving " + result.size() + " sites: " + names);
+		}
+		return result;
+	}
+
+	/**
+	 * The site name, <code>null</code> for the single unnamed site.
+	 */
+	public String getName() {
+		return _name;
+	}
+
+	/**
+	 * The given name qualified with the site name for log messages and thread names.
+	 */
+	String qualify(String name) {
+		return _name == null ? name : name + " [" + _name + "]";
+	}
+
+	/**
+	 * The given metric name qualified with the site name, see {@link Metrics#register(String, Metrics.Gauge)}.
+	 */
+	String qualifyMetric(String name) {
+		return _name == null ? name : "site." + _name + "." + name;
+	}
+
+	/**
+	 * The topic prefix of this site, ending with <code>/</code>.
+	 */
+	public String getTopicPrefix() {
+		return _topicPrefix;
+	}
+
+	/**
+	 * The group addresses of this site.
+	 */
+	public GroupAddressManager getAddressManager() {
+		return _addressManager;
+	}
+
+	/**
+	 * The publish policies of this site.
+	 */
+	public PublishPolicies getPublishPolicies() {
+		return _publishPolicies;
+	}
+
+	/**
+	 * The state store of this site, or <code>null</code>.
+	 */
+	public StateStore getStateStore() {
+		return _stateStore;
+	}
+
+	/**
+	 * @see #getStateStore()
+	 */
+	public void setStateStore(StateStore stateStore) {
+		_stateStore = stateStore;
+	}
+
+	/**
+	 * The KNX links of this site, <code>null</code> before they are launched.
+	 */
+	public KNXLinks getLinks() {
+		return _links;
+	}
+
+	/**
+	 * @see #getLinks()
+	 */
+	void setLinks(KNXLinks links) {
+		_links = links;
+	}
+
+	/**
+	 * Whether at least one KNX link of this site is open, as last reported to MQTT.
+	 */
+	boolean isKNXConnected() {
+		return _knxConnected;
+	}
+
+	/**
+	 * @see #isKNXConnected()
+	 */
+	void setKNXConnected(boolean connected) {
+		_knxConnected = connected;
+	}
+
+	/**
+	 * The {@link StatusEncoder.Template} for status messages of the given group address, created on
+	 * first use. Callers must synchronize on the group address.
+	 */
+	public StatusEncoder.Template getStatusTemplate(GroupAddressInfo gai) {
+		StatusEncoder.Template result = gai.statusTemplate;
+		if (result == null) {
+			result = createStatusTemplate(gai.getName(), gai.getDpt());
+			gai.statusTemplate = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a {@link StatusEncoder.Template} for status messages of a group with the given name.
+	 */
+	public StatusEncoder.Template createStatusTemplate(String name, String dpt) {
+		return StatusEncoder.createTemplate(_topicPrefix + "status/" + name, dpt);
+	}
+
+	/**
+	 * The value of the given option of this site, or of the global option.
+	 *
+	 * @param key
+	 *        The full name of the global option, see {@link PropertyNames}.
+	 */
+	public String getProperty(String key) {
+		String result = getOwnProperty(key);
+		return result != null ? result : System.getProperty(key);
+	}
+
+	/**
+	 * The value of the given option of this site, of the global option, or the given default.
+	 */
+	public String getProperty(String key, String defaultValue) {
+		String result = getProperty(key);
+		return result != null ? result : defaultValue;
+	}
+
+	/**
+	 * The integer value of the given option, see {@link Integer#getInteger(String, int)}.
+	 */
+	public int getInt(String key, int defaultValue) {
+		String value = getProperty(key);
+		if (value != null) {
+			try {
+				return Integer.decode(value).intValue();
+			} catch (NumberFormatException e) {
+				// Ignore, like Integer.getInteger().
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * The long value of the given option, see {@link Long#getLong(String, long)}.
+	 */
+	public long getLong(String key, long defaultValue) {
+		String value = getProperty(key);
+		if (value != null) {
+			try {
+				return Long.decode(value).longValue();
+			} catch (NumberFormatException e) {
+				// Ignore, like Long.getLong().
+			}
+		}
+		return defaultValue;
+	}
+
+	private String getOwnProperty(String key) {
+		if (_name == null || !key.startsWith(PREFIX)) {
+			return null;
+		}
+		return System.getProperty(SITE_PREFIX + _name + "." + key.substring(PREFIX.length()));
+	}
+
+}
@@ -0,0 +1,206 @@
+package com.tellerulam.knx2mqtt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import tuwien.auto.calimero.exception.KNXFormatException;
+
+/**
+ * Memory mapped file with the last value of each group address, so that the state (and especially
+ * the time of the last change) survives a restart.
+ *
+ * <p>
+ * The file has a fixed slot for each of the 65536 group addresses, containing the last raw ASDU,
+ * the time of the last change and the time of the last update. Values are written to the mapped
+ * memory only, the operating system writes them to disk. In addition, the file is forced to disk
+ * in regular intervals and on shutdown, but never for a single telegram.
+ * </p>
+ */
+public class StateStore {
+	private static final Logger L = Logger.getLogger(StateStore.class.getName());
+
+	private static final int MAGIC = 0x4B324D53; // "K2MS"
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+
+	/**
+	 * Maximum length of a stored ASDU, enough for a 14 character string (DPT 16).
+	 */
+	static final int MAX_ASDU_LENGTH = 14;
+
+	/*
+	 * Slot layout: length of the ASDU (0 for an empty slot), the ASDU, padding, time of the last
+	 * change and time of the last update.
+	 */
+	private static final int SLOT_LENGTH = 0;
+
+	private static final int SLOT_ASDU = 1;
+
+	private static final int SLOT_LAST_CHANGE = 16;
+
+	private static final int SLOT_LAST_UPDATE = 24;
+
+	private static final int SLOT_SIZE = 32;
+
+	private static final int FILE_SIZE = HEADER_SIZE + GroupAddressManager.ADDRESS_SPACE * SLOT_SIZE;
+
+	private static final long FLUSH_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+	private final File _file;
+
+	private final MappedByteBuffer _buffer;
+
+	private volatile boolean _dirty;
+
+	private StateStore(File file, MappedByteBuffer buffer) {
+		_file = file;
+		_buffer = buffer;
+	}
+
+	/**
+	 * Opens the state store configured for the given site.
+	 *
+	 * @return The state store, or <code>null</code>, if there is none.
+	 */
+	public static StateStore fromConfig(Site site, String projectFileName) {
+		String fileName = site.getProperty(PropertyNames.KNX2MQTT_KNX_STATEFILE);
+		if (fileName == null) {
+			if (projectFileName == null) {
+				L.config("No state file specified");
+				return null;
+			}
+			fileName = projectFileName + ".state";
+		} else if (fileName.isEmpty()) {
+			L.config("State file disabled");
+			return null;
+		}
+		try {
+			return open(new File(fileName));
+		} catch (IOException e) {
+			L.log(Level.WARNING, "Unable to open state file " + fileName + ", state will not survive a restart", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Opens (or creates) the given state file.
+	 */
+	public static StateStore open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			boolean valid = raf.length() == FILE_SIZE;
+			if (!valid) {
+				raf.setLength(0);
+				raf.setLength(FILE_SIZE);
+			}
+			// The mapping stays valid after the file has been closed.
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+			if (valid && (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != SLOT_SIZE)) {
+				L.warning("State file " + file + " has an unknown format, starting with an empty state");
+				for (int n = 0; n < FILE_SIZE; n += 8) {
+					buffer.putLong(n, 0);
+				}
+				valid = false;
+			}
+			if (!valid) {
+				buffer.putInt(0, MAGIC);
+				buffer.putInt(4, VERSION);
+				buffer.putInt(8, SLOT_SIZE);
+			}
+			StateStore result = new StateStore(file, buffer);
+			result.scheduleFlush();
+			return result;
+		}
+	}
+
+	private void scheduleFlush() {
+		Main.t.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, FLUSH_INTERVAL, FLUSH_INTERVAL);
+		Runtime.getRuntime().addShutdownHook(new Thread("State Store Shutdown") {
+			@Override
+			public void run() {
+				flush();
+			}
+		});
+	}
+
+	/**
+	 * Restores the last values of all known group addresses from the file.
+	 */
+	public void restore(GroupAddressManager addressManager) {
+		int restored = 0;
+		for (int rawAddress = 0; rawAddress < GroupAddressManager.ADDRESS_SPACE; rawAddress++) {
+			int slot = slot(rawAddress);
+			int length = _buffer.get(slot + SLOT_LENGTH);
+			if (length <= 0 || length > MAX_ASDU_LENGTH) {
+				continue;
+			}
+			// Only touch group addresses with a stored value, these may be loaded lazily.
+			GroupAddressInfo gai = addressManager.getGAInfoForAddress(rawAddress);
+			if (gai == null) {
+				continue;
+			}
+			byte[] asdu = new byte[length];
+			for (int n = 0; n < length; n++) {
+				asdu[n] = _buffer.get(slot + SLOT_ASDU + n);
+			}
+			try {
+				gai.translateAndStoreValue(asdu, _buffer.getLong(slot + SLOT_LAST_CHANGE));
+				restored++;
+			} catch (KNXFormatException e) {
+				L.fine("Ignoring stored value of " + gai.getAddress() + ": " + e.getMessage());
+			}
+		}
+		L.info("Restored the state of " + restored + " group addresses from " + _file);
+	}
+
+	/**
+	 * Records the given value of a group address.
+	 *
+	 * <p>
+	 * Values of different group addresses may be recorded concurrently, callers serialize the
+	 * updates of a single group address.
+	 * </p>
+	 */
+	public void record(int rawAddress, byte[] asdu, long lastChange, long lastUpdate) {
+		if (asdu.length > MAX_ASDU_LENGTH) {
+			return;
+		}
+		int slot = slot(rawAddress);
+		_buffer.put(slot + SLOT_LENGTH, (byte) asdu.length);
+		for (int n = 0; n < asdu.length; n++) {
+			_buffer.put(slot + SLOT_ASDU + n, asdu[n]);
+		}
+		_buffer.putLong(slot + SLOT_LAST_CHANGE, lastChange);
+		_buffer.putLong(slot + SLOT_LAST_UPDATE, lastUpdate);
+		_dirty = true;
+	}
+
+	/**
+	 * Forces recorded values to disk.
+	 */
+	public void flush() {
+		if (!_dirty) {
+			return;
+		}
+		_dirty = false;
+		_buffer.force();
+	}
+
+	private static int slot(int rawAddress) {
+		return HEADER_SIZE + rawAddress * SLOT_SIZE;
+	}
+
+}
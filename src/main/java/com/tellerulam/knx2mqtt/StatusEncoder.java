@@ -0,0 +1,259 @@
+package com.tellerulam.knx2mqtt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import tuwien.auto.calimero.IndividualAddress;
+
+/**
+ * Encoder for the JSON status messages published for group telegrams.
+ *
+ * <p>
+ * The message is written directly as UTF-8 into a reusable byte buffer. All parts that do not
+ * change between telegrams of the same group address are pre-rendered in a {@link Template}, so
+ * that only the timestamps, the source address and the value must be written for each telegram.
+ * </p>
+ *
+ * <p>
+ * An encoder is not thread-safe, it is meant to be used by the publisher thread only.
+ * </p>
+ */
+public class StatusEncoder {
+
+	/**
+	 * The static parts of the status message of a single group address.
+	 */
+	public static final class Template {
+		private final String _topic;
+
+		private final byte[] _dptField;
+
+		Template(String topic, String dpt) {
+			_topic = topic;
+			_dptField = bytes(",\"knx_dpt\":" + (dpt == null ? "null" : "\"" + escape(dpt) + "\""));
+		}
+
+		/**
+		 * The topic to publish to.
+		 */
+		public String getTopic() {
+			return _topic;
+		}
+	}
+
+	private static final byte[] TS = bytes("{\"ts\":");
+
+	private static final byte[] LC = bytes(",\"lc\":");
+
+	private static final byte[] SRC = bytes(",\"knx_src_addr\":");
+
+	private static final byte[] TEXTUAL = bytes(",\"knx_textual\":");
+
+	private static final byte[] VAL = bytes(",\"val\":");
+
+	private static final byte[] NULL = bytes("null");
+
+	private static final byte[] HEX = bytes("0123456789abcdef");
+
+	/**
+	 * Largest absolute value of an integral double that is written without a fraction.
+	 */
+	private static final double MAX_INTEGRAL = 1e15;
+
+	private byte[] _buffer = new byte[256];
+
+	private int _length;
+
+	/**
+	 * Creates the {@link Template} for status messages published to the given topic.
+	 */
+	public static Template createTemplate(String topic, String dpt) {
+		return new Template(topic, dpt);
+	}
+
+	/**
+	 * Encodes a status message.
+	 *
+	 * <p>
+	 * The value is either given as number or text, depending on its kind.
+	 * </p>
+	 *
+	 * @return A new array containing exactly the encoded message. A copy is required, since the
+	 *         MQTT client keeps the payload until the message is delivered.
+	 */
+	public byte[] encode(Template template, long updateTime, long lastChange, IndividualAddress src,
+			String textual, DptDecoder.Kind kind, double number, String text) {
+		_length = 0;
+		write(TS);
+		writeLong(updateTime);
+		write(LC);
+		writeLong(lastChange);
+		write(SRC);
+		writeAddress(src);
+		write(template._dptField);
+		if (textual != null) {
+			write(TEXTUAL);
+			writeString(textual);
+		}
+		write(VAL);
+		switch (kind) {
+		case INTEGRAL:
+			writeLong((long) number);
+			break;
+		case FLOAT:
+			writeFloat((float) number);
+			break;
+		case DOUBLE:
+			writeDouble(number);
+			break;
+		default:
+			writeString(text);
+		}
+		writeByte('}');
+		return Arrays.copyOf(_buffer, _length);
+	}
+
+	private void writeAddress(IndividualAddress src) {
+		writeByte('"');
+		writeLong(src.getArea());
+		writeByte('.');
+		writeLong(src.getLine());
+		writeByte('.');
+		writeLong(src.getDevice());
+		writeByte('"');
+	}
+
+	private void writeDouble(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			write(NULL);
+		} else if (value == Math.rint(value) && Math.abs(value) < MAX_INTEGRAL) {
+			// Same as the JSON library, which cuts off a trailing ".0".
+			writeLong((long) value);
+		} else {
+			writeAscii(Double.toString(value));
+		}
+	}
+
+	private void writeFloat(float value) {
+		if (Float.isNaN(value) || Float.isInfinite(value)) {
+			write(NULL);
+		} else if (value == Math.rint(value) && Math.abs(value) < MAX_INTEGRAL) {
+			writeLong((long) value);
+		} else {
+			// Use the shortest representation of the float, widening it to double would produce
+			// spurious digits.
+			writeAscii(Float.toString(value));
+		}
+	}
+
+	private void writeAscii(String str) {
+		ensure(str.length());
+		for (int n = 0, cnt = str.length(); n < cnt; n++) {
+			_buffer[_length++] = (byte) str.charAt(n);
+		}
+	}
+
+	private void writeLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			write(bytes(Long.toString(value)));
+			return;
+		}
+		ensure(20);
+		if (value < 0) {
+			_buffer[_length++] = '-';
+			value = -value;
+		}
+		int start = _length;
+		do {
+			_buffer[_length++] = (byte) ('0' + (value % 10));
+			value /= 10;
+		} while (value != 0);
+
+		// Digits were written in reverse order.
+		for (int left = start, right = _length - 1; left < right; left++, right--) {
+			byte tmp = _buffer[left];
+			_buffer[left] = _buffer[right];
+			_buffer[right] = tmp;
+		}
+	}
+
+	private void writeString(String value) {
+		// Worst case is a \\u escape for each char.
+		ensure(value.length() * 6 + 2);
+		byte[] buf = _buffer;
+		int pos = _length;
+		buf[pos++] = '"';
+		for (int n = 0, cnt = value.length(); n < cnt; n++) {
+			char ch = value.charAt(n);
+			if (ch == '"' || ch == '\\') {
+				buf[pos++] = '\\';
+				buf[pos++] = (byte) ch;
+			} else if (ch < 0x20) {
+				buf[pos++] = '\\';
+				switch (ch) {
+				case '\n':
+					buf[pos++] = 'n';
+					break;
+				case '\r':
+					buf[pos++] = 'r';
+					break;
+				case '\t':
+					buf[pos++] = 't';
+					break;
+				default:
+					buf[pos++] = 'u';
+					buf[pos++] = '0';
+					buf[pos++] = '0';
+					buf[pos++] = HEX[ch >> 4];
+					buf[pos++] = HEX[ch & 0xF];
+				}
+			} else if (ch < 0x80) {
+				buf[pos++] = (byte) ch;
+			} else if (ch < 0x800) {
+				buf[pos++] = (byte) (0xC0 | (ch >> 6));
+				buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+			} else if (Character.isHighSurrogate(ch) && n + 1 < cnt && Character.isLowSurrogate(value.charAt(n + 1))) {
+				int codePoint = Character.toCodePoint(ch, value.charAt(++n));
+				buf[pos++] = (byte) (0xF0 | (codePoint >> 18));
+				buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buf[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(ch)) {
+				buf[pos++] = '?';
+			} else {
+				buf[pos++] = (byte) (0xE0 | (ch >> 12));
+				buf[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+				buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+			}
+		}
+		buf[pos++] = '"';
+		_length = pos;
+	}
+
+	private void writeByte(char ch) {
+		ensure(1);
+		_buffer[_length++] = (byte) ch;
+	}
+
+	private void write(byte[] data) {
+		ensure(data.length);
+		System.arraycopy(data, 0, _buffer, _length, data.length);
+		_length += data.length;
+	}
+
+	private void ensure(int additional) {
+		int required = _length + additional;
+		if (required > _buffer.length) {
+			_buffer = Arrays.copyOf(_buffer, Math.max(required, 2 * _buffer.length));
+		}
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,253 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import tuwien.auto.calimero.IndividualAddress;
+
+/**
+ * Publish stage between the KNX receive path and the MQTT broker.
+ *
+ * <p>
+ * The Calimero listener only hands off an {@link Event} to a bounded queue. A dedicated thread
+ * drains the queue in batches and publishes the events through the {@link MQTTHandler}, so that a
+ * slow broker does not stall the KNX event thread.
+ * </p>
+ */
+public class StatusPublisher extends Thread {
+	private final Logger L = Logger.getLogger(getClass().getName());
+
+	/**
+	 * A status update to publish.
+	 */
+	static final class Event {
+		final StatusEncoder.Template template;
+
+		final DptDecoder.Kind kind;
+
+		final double number;
+
+		final String text;
+
+		final IndividualAddress src;
+
+		final String textual;
+
+		final long updateTime;
+
+		final long lastChange;
+
+		/**
+		 * {@link System#nanoTime()} when the telegram was received, <code>0</code> if the latency of
+		 * this update is not measured.
+		 */
+		final long receiveTime;
+
+		Event(StatusEncoder.Template template, DptDecoder.Kind kind, double number, String text,
+				IndividualAddress src, String textual, long updateTime, long lastChange, long receiveTime) {
+			this.template = template;
+			this.kind = kind;
+			this.number = number;
+			this.text = text;
+			this.src = src;
+			this.textual = textual;
+			this.updateTime = updateTime;
+			this.lastChange = lastChange;
+			this.receiveTime = receiveTime;
+		}
+
+		/**
+		 * A copy of this update that was deliberately delayed and is therefore not measured.
+		 */
+		Event deferred() {
+			return new Event(template, kind, number, text, src, textual, updateTime, lastChange, 0);
+		}
+	}
+
+	public static StatusPublisher launch(MQTTHandler mqtt) {
+		final StatusPublisher result = new StatusPublisher(mqtt);
+		result.start();
+		Metrics.register("mqtt.queue.depth", new Metrics.Gauge() {
+			@Override
+			public long get() {
+				return result.getQueueDepth();
+			}
+		});
+		Metrics.register("mqtt.queue.published", new Metrics.Gauge() {
+			@Override
+			public long get() {
+				return result.getPublishedCount();
+			}
+		});
+		Metrics.register("mqtt.queue.dropped", new Metrics.Gauge() {
+			@Override
+			public long get() {
+				return result.getDroppedCount();
+			}
+		});
+		Metrics.register("mqtt.queue.backpressure", new Metrics.Gauge() {
+			@Override
+			public long get() {
+				return result.getBackpressureCount();
+			}
+		});
+		Main.t.schedule(result.new StatisticsReporter(), STATISTICS_INTERVAL, STATISTICS_INTERVAL);
+		return result;
+	}
+
+	private static final long STATISTICS_INTERVAL = 60 * 1000;
+
+	private final MQTTHandler _mqtt;
+
+	private final BlockingQueue<Event> _queue;
+
+	private final int _batchSize;
+
+	private final long _offerTimeout;
+
+	private final AtomicLong _published = new AtomicLong();
+
+	private final AtomicLong _dropped = new AtomicLong();
+
+	private final AtomicLong _delayed = new AtomicLong();
+
+	private volatile int _maxDepth;
+
+	private StatusPublisher(MQTTHandler mqtt) {
+		super("MQTT Publisher Thread");
+		setDaemon(true);
+		_mqtt = mqtt;
+		_queue = new ArrayBlockingQueue<>(
+				Integer.getInteger(PropertyNames.KNX2MQTT_MQTT_QUEUESIZE, 4096).intValue());
+		_batchSize = Math.max(1, Integer.getInteger(PropertyNames.KNX2MQTT_MQTT_BATCHSIZE, 64).intValue());
+		_offerTimeout = Integer.getInteger(PropertyNames.KNX2MQTT_MQTT_QUEUETIMEOUT, 50).longValue();
+	}
+
+	/**
+	 * Queues a status update for publishing.
+	 *
+	 * <p>
+	 * The value is either given as number or text, depending on its kind.
+	 * </p>
+	 *
+	 * <p>
+	 * If the queue is full, the caller is blocked for at most the configured queue timeout
+	 * (backpressure). If there is still no room afterwards, the event is dropped.
+	 * </p>
+	 */
+	public void publish(StatusEncoder.Template template, DptDecoder.Kind kind, double number, String text,
+			IndividualAddress src, String textual, long updateTime, long lastChange, long receiveTime) {
+		publish(new Event(template, kind, number, text, src, textual, updateTime, lastChange, receiveTime));
+	}
+
+	/**
+	 * Queues the given status update for publishing.
+	 *
+	 * @see #publish(StatusEncoder.Template, DptDecoder.Kind, double, String, IndividualAddress, String,
+	 *      long, long, long)
+	 */
+	void publish(Event event) {
+		if (!_queue.offer(event)) {
+			_delayed.incrementAndGet();
+			boolean accepted;
+			try {
+				accepted = _offerTimeout > 0 && _queue.offer(event, _offerTimeout, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				accepted = false;
+			}
+			if (!accepted) {
+				_dropped.incrementAndGet();
+				L.fine("Publish queue full, dropping update of " + event.template.getTopic());
+				return;
+			}
+		}
+		int depth = _queue.size();
+		if (depth > _maxDepth)
+			_maxDepth = depth;
+	}
+
+	/**
+	 * Number of events currently waiting to be published.
+	 */
+	public int getQueueDepth() {
+		return _queue.size();
+	}
+
+	/**
+	 * Number of events published so far.
+	 */
+	public long getPublishedCount() {
+		return _published.get();
+	}
+
+	/**
+	 * Number of events dropped because the queue was full or publishing failed.
+	 */
+	public long getDroppedCount() {
+		return _dropped.get();
+	}
+
+	/**
+	 * Number of times the KNX receive path had to wait for room in the queue.
+	 */
+	public long getBackpressureCount() {
+		return _delayed.get();
+	}
+
+	@Override
+	public void run() {
+		List<Event> batch = new ArrayList<>(_batchSize);
+		for (;;) {
+			try {
+				batch.add(_queue.take());
+				_queue.drainTo(batch, _batchSize - 1);
+				for (Event event : batch) {
+					try {
+						if (_mqtt.doPublish(event.template, event.kind, event.number, event.text, event.src,
+								event.textual, event.updateTime, event.lastChange, event.receiveTime))
+							_published.incrementAndGet();
+						else
+							_dropped.incrementAndGet();
+					} catch (Exception e) {
+						_dropped.incrementAndGet();
+						L.log(Level.WARNING, "Error when publishing status update " + event.template.getTopic(), e);
+					}
+				}
+			} catch (InterruptedException e) {
+				L.info("Publisher thread interrupted, stopping");
+				return;
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	private class StatisticsReporter extends TimerTask {
+		private long _lastDropped;
+
+		private long _lastDelayed;
+
+		@Override
+		public void run() {
+			long dropped = _dropped.get();
+			long delayed = _delayed.get();
+			Level level = dropped != _lastDropped || delayed != _lastDelayed ? Level.INFO : Level.FINE;
+			if (L.isLoggable(level)) {
+				L.log(level, "Publish queue: depth=" + _queue.size() + ", max depth=" + _maxDepth + ", published="
+						+ _published.get() + ", backpressure=" + delayed + ", dropped=" + dropped);
+			}
+			_lastDropped = dropped;
+			_lastDelayed = delayed;
+			_maxDepth = _queue.size();
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the group telegrams received through several KNX links to the same installation.
+ *
+ * <p>
+ * Each link receives its own copy of a bus telegram. A telegram with the same source and value as
+ * the last one to the same group address is a copy, if it arrives within a short window and through
+ * a link that did not deliver that telegram yet. A repetition arriving through the same link is a
+ * new telegram. Telegrams sent by one of the links are seen by the other links, these are dropped
+ * as well.
+ * </p>
+ *
+ * <p>
+ * Echoes are recognized by the individual address the gateway assigned to the sending link. This
+ * address is only known after the first confirmation of a link, before that an echo is recognized
+ * by the destination and value of a telegram the link sent shortly before, which also reveals the
+ * address.
+ * </p>
+ */
+final class TelegramDeduplicator {
+
+	private final long _windowNanos;
+
+	/**
+	 * Source address and value hash of the last telegram, by group address.
+	 */
+	private final long[] _fingerprints = new long[0x10000];
+
+	/**
+	 * Receive time of the first copy of the last telegram, by group address.
+	 */
+	private final long[] _times = new long[0x10000];
+
+	/**
+	 * Bit set of the links that delivered the last telegram, by group address.
+	 */
+	private final int[] _links = new int[0x10000];
+
+	/**
+	 * Value hash of the last telegram sent by a link with unknown address, by group address.
+	 */
+	private final int[] _sentHashes = new int[0x10000];
+
+	/**
+	 * Send time of the last telegram sent by a link with unknown address, by group address.
+	 */
+	private final long[] _sentTimes = new long[0x10000];
+
+	/**
+	 * Index plus one of the link that sent the last telegram with unknown address, <code>0</code> if
+	 * there is none, by group address.
+	 */
+	private final byte[] _sentLinks = new byte[0x10000];
+
+	/**
+	 * Individual address of each link as assigned by its gateway, <code>-1</code> while unknown.
+	 */
+	private final int[] _ownAddresses;
+
+	/**
+	 * Creates a {@link TelegramDeduplicator}.
+	 *
+	 * @param links
+	 *        Number of links.
+	 * @param windowMillis
+	 *        Time in which copies of a telegram are expected to arrive through all links.
+	 */
+	TelegramDeduplicator(int links, long windowMillis) {
+		_windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		_ownAddresses = new int[links];
+		Arrays.fill(_ownAddresses, -1);
+	}
+
+	/**
+	 * Sets the individual address of a link, telegrams from this address are echoes of own
+	 * telegrams.
+	 */
+	synchronized void setOwnAddress(int link, int rawAddress) {
+		_ownAddresses[link] = rawAddress;
+	}
+
+	/**
+	 * Forgets the individual address of a link, the gateway may assign another one on reconnect.
+	 */
+	synchronized void clearOwnAddress(int link) {
+		_ownAddresses[link] = -1;
+	}
+
+	/**
+	 * Notes a telegram the given link is about to send, so that its echo is recognized before the
+	 * address of the link is known.
+	 *
+	 * @param now
+	 *        Send time from {@link System#nanoTime()}.
+	 */
+	synchronized void sent(int link, int destination, byte[] asdu, long now) {
+		if (_ownAddresses[link] >= 0) {
+			return;
+		}
+		_sentHashes[destination] = Arrays.hashCode(asdu);
+		_sentTimes[destination] = now;
+		_sentLinks[destination] = (byte) (link + 1);
+	}
+
+	/**
+	 * Whether the given telegram is new and must be processed.
+	 *
+	 * @param link
+	 *        Index of the link that received the telegram, less than 32.
+	 * @param now
+	 *        Receive time from {@link System#nanoTime()}.
+	 */
+	synchronized boolean accept(int link, int destination, int source, byte[] asdu, long now) {
+		for (int ownAddress : _ownAddresses) {
+			if (ownAddress == source) {
+				return false;
+			}
+		}
+		int hash = Arrays.hashCode(asdu);
+		int sender = _sentLinks[destination] - 1;
+		if (sender >= 0 && sender != link && _sentHashes[destination] == hash
+				&& now - _sentTimes[destination] < _windowNanos) {
+			_sentLinks[destination] = 0;
+			if (_ownAddresses[sender] < 0) {
+				_ownAddresses[sender] = source;
+			}
+			return false;
+		}
+		long fingerprint = ((long) source << 32) | (hash & 0xFFFFFFFFL);
+		int bit = 1 << link;
+		int links = _links[destination];
+		if (links != 0 && (links & bit) == 0 && _fingerprints[destination] == fingerprint
+				&& now - _times[destination] < _windowNanos) {
+			_links[destination] = links | bit;
+			return false;
+		}
+		_fingerprints[destination] = fingerprint;
+		_times[destination] = now;
+		_links[destination] = bit;
+		return true;
+	}
+
+}
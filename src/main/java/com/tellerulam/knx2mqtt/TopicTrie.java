@@ -0,0 +1,236 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled index of group names for resolving MQTT command topics.
+ *
+ * <p>
+ * The index is a radix tree over the characters of the group names (i.e. the group range hierarchy
+ * followed by the group address name). A topic is resolved to the raw group address in a single
+ * pass over its characters starting at a given offset, so that the topic prefix and the action
+ * level do not have to be cut off.
+ * </p>
+ *
+ * <p>
+ * A {@link TopicTrie} is immutable and can be used from any thread.
+ * </p>
+ */
+public class TopicTrie {
+
+	/**
+	 * Value returned, if a topic does not denote a group address.
+	 */
+	public static final int NONE = -1;
+
+	private static final char[] NO_CHARS = {};
+
+	private static final Node[] NO_NODES = {};
+
+	private static final int[] NO_ADDRESSES = {};
+
+	private static final class Node {
+		/**
+		 * Characters common to all names in this subtree, following the label of the parent node.
+		 */
+		final String label;
+
+		/**
+		 * Address of the group whose name ends at this node, or {@link TopicTrie#NONE}.
+		 */
+		int address = NONE;
+
+		/**
+		 * The first characters of the labels of the child nodes, sorted.
+		 */
+		char[] firstChars = NO_CHARS;
+
+		Node[] children = NO_NODES;
+
+		/**
+		 * Number of addresses in this subtree.
+		 */
+		int size;
+
+		Node(String label) {
+			this.label = label;
+		}
+
+		Node child(char ch) {
+			int index = Arrays.binarySearch(firstChars, ch);
+			return index < 0 ? null : children[index];
+		}
+	}
+
+	private final Node _root;
+
+	private TopicTrie(Node root) {
+		_root = root;
+	}
+
+	/**
+	 * Compiles a {@link TopicTrie} from the given mapping of group names to raw group addresses.
+	 */
+	public static TopicTrie compile(Map<String, Integer> addressByName) {
+		int size = addressByName.size();
+		if (size == 0) {
+			return new TopicTrie(null);
+		}
+		String[] names = addressByName.keySet().toArray(new String[size]);
+		Arrays.sort(names);
+		int[] addresses = new int[size];
+		for (int n = 0; n < size; n++) {
+			addresses[n] = addressByName.get(names[n]).intValue();
+		}
+		return new TopicTrie(build(names, addresses, 0, size, 0));
+	}
+
+	/**
+	 * Builds the node for the sorted names in the range <code>[from, to)</code>, which all share
+	 * their first <code>depth</code> characters.
+	 */
+	private static Node build(String[] names, int[] addresses, int from, int to, int depth) {
+		// Since the names are sorted, the common prefix of the first and the last name is common to
+		// all names in the range.
+		String first = names[from];
+		String last = names[to - 1];
+		int end = depth;
+		int max = Math.min(first.length(), last.length());
+		while (end < max && first.charAt(end) == last.charAt(end)) {
+			end++;
+		}
+
+		Node node = new Node(first.substring(depth, end));
+		node.size = to - from;
+		int n = from;
+		if (first.length() == end) {
+			node.address = addresses[n++];
+		}
+
+		List<Node> children = new ArrayList<>();
+		while (n < to) {
+			char ch = names[n].charAt(end);
+			int m = n + 1;
+			while (m < to && names[m].charAt(end) == ch) {
+				m++;
+			}
+			children.add(build(names, addresses, n, m, end));
+			n = m;
+		}
+		if (!children.isEmpty()) {
+			node.children = children.toArray(new Node[children.size()]);
+			node.firstChars = new char[node.children.length];
+			for (int k = 0; k < node.children.length; k++) {
+				node.firstChars[k] = node.children[k].label.charAt(0);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Resolves the group name starting at the given offset of the topic.
+	 *
+	 * @return The raw group address, or {@link #NONE} if the name is unknown.
+	 */
+	public int lookup(String topic, int start) {
+		Node node = _root;
+		int pos = start;
+		int length = topic.length();
+		while (node != null) {
+			String label = node.label;
+			int labelLength = label.length();
+			if (!topic.regionMatches(pos, label, 0, labelLength)) {
+				return NONE;
+			}
+			pos += labelLength;
+			if (pos == length) {
+				return node.address;
+			}
+			node = node.child(topic.charAt(pos));
+		}
+		return NONE;
+	}
+
+	/**
+	 * Resolves a multi-level wildcard topic such as <code>Keller/#</code> starting at the given
+	 * offset of the topic.
+	 *
+	 * @return All raw group addresses below the given group range, or <code>null</code> if the topic
+	 *         is not a wildcard topic.
+	 */
+	public int[] lookupSubtree(String topic, int start) {
+		int length = topic.length();
+		if (length <= start || topic.charAt(length - 1) != '#') {
+			return null;
+		}
+		int wildcard = length - 1;
+		if (wildcard > start && topic.charAt(wildcard - 1) != '/') {
+			return null;
+		}
+
+		Node node = _root;
+		int pos = start;
+		while (node != null) {
+			String label = node.label;
+			for (int n = 0, labelLength = label.length(); n < labelLength; n++, pos++) {
+				if (pos == wildcard) {
+					return collect(node);
+				}
+				if (topic.charAt(pos) != label.charAt(n)) {
+					return NO_ADDRESSES;
+				}
+			}
+			if (pos == wildcard) {
+				return collect(node);
+			}
+			node = node.child(topic.charAt(pos));
+		}
+		return NO_ADDRESSES;
+	}
+
+	private static int[] collect(Node node) {
+		int[] result = new int[node.size];
+		int cnt = collect(node, result, 0);
+		return cnt == result.length ? result : Arrays.copyOf(result, cnt);
+	}
+
+	private static int collect(Node node, int[] result, int pos) {
+		if (node.address != NONE) {
+			result[pos++] = node.address;
+		}
+		for (Node child : node.children) {
+			pos = collect(child, result, pos);
+		}
+		return pos;
+	}
+
+	/**
+	 * Number of group names in this index.
+	 */
+	public int size() {
+		return _root == null ? 0 : _root.size;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		if (_root != null) {
+			append(result, _root, "");
+		}
+		return result.toString();
+	}
+
+	private static void append(StringBuilder result, Node node, String prefix) {
+		String name = prefix + node.label;
+		if (node.address != NONE) {
+			result.append(name).append('\n');
+		}
+		for (Node child : node.children) {
+			append(result, child, name);
+		}
+	}
+
+}
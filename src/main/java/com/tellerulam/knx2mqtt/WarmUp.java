@@ -0,0 +1,181 @@
+package com.tellerulam.knx2mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Fills the state of all (or selected) group addresses after startup by reading them from the bus.
+ *
+ * <p>
+ * The reads are sent in the background at a limited rate with {@link SendClass#BULK}, so that they
+ * never delay other telegrams. Group addresses whose value has already been received are skipped.
+ * </p>
+ */
+public class WarmUp extends Thread {
+	private static final Logger L = Logger.getLogger(WarmUp.class.getName());
+
+	/**
+	 * Time to wait for the responses after the last read has been sent.
+	 */
+	private static final long RESPONSE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+	/**
+	 * Interval between two progress reports.
+	 */
+	private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+	private final GroupAddressManager _addressManager;
+
+	private final KNXLinks _links;
+
+	private final String[] _prefixes;
+
+	private final long _readInterval;
+
+	private final int _budget;
+
+	/**
+	 * Creates a {@link WarmUp}.
+	 *
+	 * @param prefixes
+	 *        Name prefixes of the group addresses to read, an empty prefix selects all.
+	 * @param rate
+	 *        Maximum number of reads per second.
+	 * @param budget
+	 *        Maximum number of reads, 0 for no limit.
+	 */
+	public WarmUp(Site site, String[] prefixes, int rate, int budget) {
+		super(site.qualify("KNX Warm-up Thread"));
+		setDaemon(true);
+		_addressManager = site.getAddressManager();
+		_links = site.getLinks();
+		_prefixes = prefixes;
+		_readInterval = TimeUnit.SECONDS.toMillis(1) / Math.max(1, rate);
+		_budget = budget;
+	}
+
+	/**
+	 * Starts the warm-up of the given site, if configured.
+	 */
+	public static void launch(Site site) {
+		String config = site.getProperty(PropertyNames.KNX2MQTT_KNX_WARMUP);
+		if (config == null) {
+			L.config("No warm-up configured");
+			return;
+		}
+		String[] prefixes = "*".equals(config.trim()) ? new String[] { "" } : config.split(",");
+		for (int n = 0; n < prefixes.length; n++) {
+			prefixes[n] = prefixes[n].trim();
+		}
+		int rate = site.getInt(PropertyNames.KNX2MQTT_KNX_WARMUP_RATE, 5);
+		int budget = site.getInt(PropertyNames.KNX2MQTT_KNX_WARMUP_BUDGET, 0);
+		new WarmUp(site, prefixes, rate, budget).start();
+	}
+
+	@Override
+	public void run() {
+		try {
+			warmUp();
+		} catch (InterruptedException e) {
+			L.info("Warm-up interrupted");
+		}
+	}
+
+	private void warmUp() throws InterruptedException {
+		List<GroupAddressInfo> targets = selectTargets();
+		if (targets.isEmpty()) {
+			L.info("Warm-up: No group addresses selected");
+			return;
+		}
+		L.info("Warm-up: Reading " + targets.size() + " group addresses at most every " + _readInterval + "ms");
+
+		waitForConnection();
+		long start = System.currentTimeMillis();
+		long nextReport = start + REPORT_INTERVAL;
+
+		int sent = 0;
+		int skipped = 0;
+		for (GroupAddressInfo gai : targets) {
+			if (!hasValue(gai)) {
+				if (_budget > 0 && sent >= _budget) {
+					skipped++;
+					continue;
+				}
+				waitForConnection();
+				if (_links.submitRead(gai, SendClass.BULK)) {
+					sent++;
+					Thread.sleep(_readInterval);
+				}
+			}
+
+			long now = System.currentTimeMillis();
+			if (now >= nextReport) {
+				L.info("Warm-up: Sent " + sent + " reads, " + countKnown(targets) + " of " + targets.size()
+						+ " group addresses known after " + (now - start) + "ms");
+				nextReport = now + REPORT_INTERVAL;
+			}
+		}
+
+		if (skipped > 0) {
+			L.info("Warm-up: Budget of " + _budget + " reads exhausted, " + skipped
+					+ " group addresses without value are skipped");
+		}
+
+		long deadline = System.currentTimeMillis() + RESPONSE_TIMEOUT;
+		int known;
+		while ((known = countKnown(targets)) < targets.size() - skipped && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1000);
+		}
+		long duration = System.currentTimeMillis() - start;
+		if (known == targets.size()) {
+			L.info("Warm-up: State of all " + known + " group addresses known after " + duration + "ms (" + sent
+					+ " reads)");
+		} else {
+			L.info("Warm-up: State of " + known + " of " + targets.size() + " group addresses known after " + duration
+					+ "ms (" + sent + " reads), the others " + (skipped > 0 ? "were skipped or " : "")
+					+ "did not respond");
+		}
+	}
+
+	private List<GroupAddressInfo> selectTargets() {
+		List<GroupAddressInfo> result = new ArrayList<>();
+		for (GroupAddressInfo gai : _addressManager.addresses()) {
+			if (matches(gai.getName())) {
+				result.add(gai);
+			}
+		}
+		return result;
+	}
+
+	private boolean matches(String name) {
+		for (String prefix : _prefixes) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasValue(GroupAddressInfo gai) {
+		return gai.lastKind != null;
+	}
+
+	private static int countKnown(List<GroupAddressInfo> targets) {
+		int result = 0;
+		for (GroupAddressInfo gai : targets) {
+			if (hasValue(gai)) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	private void waitForConnection() throws InterruptedException {
+		while (!_links.isConnected()) {
+			Thread.sleep(1000);
+		}
+	}
+
+}